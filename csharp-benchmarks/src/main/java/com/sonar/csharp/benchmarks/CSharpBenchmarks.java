@@ -0,0 +1,48 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation rate. The usual JMH options can be given, for example:
+ * <pre>
+ * java -jar target/benchmarks.jar LexerBenchmark -p file=parser/LinqBridge-1.2.cs -rf json
+ * </pre>
+ */
+public final class CSharpBenchmarks {
+
+  private CSharpBenchmarks() {
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    new Runner(new OptionsBuilder()
+      .parent(commandLineOptions)
+      .addProfiler(GCProfiler.class)
+      .build()).run();
+  }
+
+}
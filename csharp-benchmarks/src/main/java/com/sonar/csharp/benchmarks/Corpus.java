@@ -0,0 +1,68 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * C# files used by the benchmarks: the test resources of csharp-squid, whose location can be changed with the "csharp.corpus"
+ * system property.
+ */
+public final class Corpus {
+
+  public static final String LINQ_BRIDGE = "parser/LinqBridge-1.2.cs";
+  public static final String CONFORMANCE_ITEMS_FIXTURE = "integration/ConformanceItemsFixture.cs";
+  public static final String SYNTAX_ALL_IN_ONE_FILE = "parser/cSharpSyntaxAllInOneFile.cs";
+  public static final String INTEGRATION = "integration";
+
+  private static final File BASE_DIR = new File(System.getProperty("csharp.corpus", "../csharp-squid/src/test/resources"));
+
+  private Corpus() {
+  }
+
+  public static File file(String path) {
+    File file = new File(BASE_DIR, path);
+    if (!file.exists()) {
+      throw new IllegalStateException("Unable to find " + file.getAbsolutePath() + ", set the \"csharp.corpus\" system property to the "
+        + "location of the test resources of csharp-squid");
+    }
+    return file;
+  }
+
+  public static String read(String path) {
+    try {
+      return Files.toString(file(path), Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static List<File> files(String path) {
+    return ImmutableList.copyOf(FileUtils.listFiles(file(path), new String[] {"cs"}, true));
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CSharpLexer}, in files and tokens per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+  @Param({Corpus.LINQ_BRIDGE, Corpus.CONFORMANCE_ITEMS_FIXTURE, Corpus.SYNTAX_ALL_IN_ONE_FILE})
+  public String file;
+
+  @Param({"false", "true"})
+  public boolean stateMachine;
+
+  private String source;
+  private CSharpConfiguration conf;
+  private Lexer lexer;
+
+  @Setup
+  public void setup() {
+    source = Corpus.read(file);
+    conf = new CSharpConfiguration();
+    conf.setStateMachineLexer(stateMachine);
+    lexer = CSharpLexer.create(conf);
+  }
+
+  @Benchmark
+  public List<Token> lex(TokenCounter counter) {
+    List<Token> tokens = lexer.lex(source);
+    counter.tokens += tokens.size();
+    return tokens;
+  }
+
+  @Benchmark
+  public List<Token> createAndLex(TokenCounter counter) {
+    List<Token> tokens = CSharpLexer.create(conf).lex(source);
+    counter.tokens += tokens.size();
+    return tokens;
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class TokenCounter {
+
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      tokens = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.parser.MemoizationPolicy;
+import com.sonar.csharp.squid.parser.MemoizationStatistics;
+
+/**
+ * Prints the number of calls and memoization hits of each rule of the grammar when parsing the corpus, or a part of it, for example:
+ * <pre>
+ * java -cp target/benchmarks.jar com.sonar.csharp.benchmarks.MemoizationReport ALL integration
+ * </pre>
+ */
+public final class MemoizationReport {
+
+  private MemoizationReport() {
+  }
+
+  public static void main(String[] args) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setMemoizationPolicy(args.length > 0 ? MemoizationPolicy.valueOf(args[0]) : MemoizationPolicy.ALL);
+    String path = args.length > 1 ? args[1] : "";
+
+    MemoizationStatistics statistics = MemoizationStatistics.collect(conf, Corpus.files(path));
+    System.out.println(statistics.getFiles() + " files parsed with memoization policy " + conf.getMemoizationPolicy()
+      + ", " + statistics.getFailures() + " parse failures");
+    System.out.print(statistics);
+  }
+
+}
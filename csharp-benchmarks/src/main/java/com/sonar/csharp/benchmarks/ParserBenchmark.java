@@ -0,0 +1,81 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.csharp.squid.parser.MemoizationPolicy;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CSharpParser}, lexing included, in files and tokens per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({Corpus.LINQ_BRIDGE, Corpus.CONFORMANCE_ITEMS_FIXTURE, Corpus.SYNTAX_ALL_IN_ONE_FILE})
+  public String file;
+
+  @Param({"NONE", "ALL", "CURATED"})
+  public MemoizationPolicy memoization;
+
+  private String source;
+  private int tokens;
+  private Parser<Grammar> parser;
+
+  @Setup
+  public void setup() {
+    source = Corpus.read(file);
+    tokens = CSharpLexer.create().lex(source).size();
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setMemoizationPolicy(memoization);
+    parser = CSharpParser.create(conf);
+  }
+
+  @Benchmark
+  public AstNode parse(LexerBenchmark.TokenCounter counter) {
+    AstNode astNode = parser.parse(source);
+    counter.tokens += tokens;
+    return astNode;
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.checks.CheckList;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCodeSearchEngine;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a full scan of the integration files by {@link CSharpAstScanner}, in scans and files per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScannerBenchmark {
+
+  @Param({"1"})
+  public int threads;
+
+  private List<File> files;
+  private CSharpConfiguration conf;
+
+  @Setup
+  public void setup() {
+    files = Corpus.files(Corpus.INTEGRATION);
+    conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setThreads(threads);
+  }
+
+  @Benchmark
+  public SourceCodeSearchEngine scan(FileCounter counter) {
+    return scan(counter, false);
+  }
+
+  @Benchmark
+  public SourceCodeSearchEngine scanWithChecks(FileCounter counter) {
+    return scan(counter, true);
+  }
+
+  private SourceCodeSearchEngine scan(FileCounter counter, boolean withChecks) {
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, new ChecksSupplier(withChecks));
+    scanner.scanFiles(files);
+    counter.files += files.size();
+    return scanner.getIndex();
+  }
+
+  private static class ChecksSupplier implements Supplier<List<SquidAstVisitor<Grammar>>> {
+
+    private final boolean withChecks;
+
+    public ChecksSupplier(boolean withChecks) {
+      this.withChecks = withChecks;
+    }
+
+    @Override
+    public List<SquidAstVisitor<Grammar>> get() {
+      if (!withChecks) {
+        return Collections.emptyList();
+      }
+
+      List<SquidAstVisitor<Grammar>> checks = Lists.newArrayList();
+      for (Class check : CheckList.getChecks()) {
+        try {
+          checks.add((SquidAstVisitor<Grammar>) check.newInstance());
+        } catch (InstantiationException e) {
+          throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return checks;
+    }
+
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class FileCounter {
+
+    public long files;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      files = 0;
+    }
+
+  }
+
+}
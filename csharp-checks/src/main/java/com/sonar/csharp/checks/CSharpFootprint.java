@@ -0,0 +1,148 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recognizes the lines of C# code, with the same results as the squid bridge CodeRecognizer given the detectors of the C# footprint:
+ * <ul>
+ * <li>EndWithDetector(0.95, '}', ';', '{')</li>
+ * <li>KeywordsDetector(0.7, "||", "&&")</li>
+ * <li>KeywordsDetector(0.3, all the C# keywords)</li>
+ * <li>ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{")</li>
+ * </ul>
+ * Instead of splitting the line and looking for each keyword and each fragment in turn, all of them are looked for in a single pass
+ * over the characters of the line, by two precompiled {@link MultiPatternAutomaton}s.
+ */
+final class CSharpFootprint {
+
+  private static final double END_WITH_PROBABILITY = 0.95;
+  private static final double OPERATORS_PROBABILITY = 0.7;
+  private static final double KEYWORDS_PROBABILITY = 0.3;
+  private static final double FRAGMENTS_PROBABILITY = 0.95;
+
+  private static final String[] OPERATORS = {"||", "&&"};
+  private static final String[] FRAGMENTS = {"++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"};
+
+  private static final MultiPatternAutomaton WORDS = new MultiPatternAutomaton(words(), true);
+  private static final MultiPatternAutomaton CODE_FRAGMENTS = new MultiPatternAutomaton(FRAGMENTS, false);
+
+  private final double threshold;
+  private final int[] fragmentNextStarts = new int[FRAGMENTS.length];
+
+  CSharpFootprint(double threshold) {
+    this.threshold = threshold;
+  }
+
+  boolean isLineOfCode(String line) {
+    return isLineOfCode(line, 0, line.length());
+  }
+
+  /**
+   * Not thread-safe.
+   */
+  boolean isLineOfCode(String text, int start, int end) {
+    boolean endsWithCodeCharacter = false;
+    int operators = 0;
+    int keywords = 0;
+    int fragments = 0;
+
+    int wordState = MultiPatternAutomaton.ROOT;
+    boolean inWord = false;
+    int fragmentState = MultiPatternAutomaton.ROOT;
+    int position = 0;
+    Arrays.fill(fragmentNextStarts, 0);
+
+    // A trailing space ends the last word
+    for (int i = start; i <= end; i++) {
+      char c = i < end ? text.charAt(i) : ' ';
+
+      // KeywordsDetector: words are delimited by the delimiters of its StringTokenizer
+      if (isWordDelimiter(c)) {
+        if (inWord) {
+          int word = WORDS.match(wordState);
+          if (word != MultiPatternAutomaton.NO_MATCH) {
+            if (word < OPERATORS.length) {
+              operators++;
+            } else {
+              keywords++;
+            }
+          }
+          inWord = false;
+          wordState = MultiPatternAutomaton.ROOT;
+        }
+      } else {
+        inWord = true;
+        wordState = WORDS.next(wordState, c);
+      }
+
+      if (!Character.isWhitespace(c)) {
+        // ContainsDetector: non-overlapping occurrences of each fragment, once the whitespaces are deleted
+        fragmentState = CODE_FRAGMENTS.next(fragmentState, c);
+        for (int fragment : CODE_FRAGMENTS.matches(fragmentState)) {
+          if (position - FRAGMENTS[fragment].length() + 1 >= fragmentNextStarts[fragment]) {
+            fragments++;
+            fragmentNextStarts[fragment] = position + 1;
+          }
+        }
+        position++;
+
+        // EndWithDetector: last character which is neither a whitespace, nor '*', nor '/'
+        if (c != '*' && c != '/') {
+          endsWithCodeCharacter = c == '}' || c == ';' || c == '{';
+        }
+      }
+    }
+
+    double probability = 0.0;
+    probability = combine(probability, END_WITH_PROBABILITY, endsWithCodeCharacter ? 1 : 0);
+    probability = combine(probability, OPERATORS_PROBABILITY, operators);
+    probability = combine(probability, KEYWORDS_PROBABILITY, keywords);
+    probability = combine(probability, FRAGMENTS_PROBABILITY, fragments);
+    return probability - threshold > 0;
+  }
+
+  private static boolean isWordDelimiter(char c) {
+    return c == ' ' || c == '\t' || c == '(' || c == ')' || c == ',' || c == '{' || c == '}';
+  }
+
+  /**
+   * Same formulas as the ones of Detector.recognition() and CodeRecognizer.recognition().
+   */
+  private static double combine(double probability, double detectorProbability, int matches) {
+    double recognition = matches == 0 ? 0.0 : 1.0 - Math.pow(1.0 - detectorProbability, matches);
+    return 1.0 - (1.0 - probability) * (1.0 - recognition);
+  }
+
+  /**
+   * The operators, followed by the keywords.
+   */
+  private static String[] words() {
+    List<String> words = Lists.newArrayList(OPERATORS);
+    words.addAll(Arrays.asList(CSharpKeyword.keywordValues()));
+    return words.toArray(new String[words.size()]);
+  }
+
+}
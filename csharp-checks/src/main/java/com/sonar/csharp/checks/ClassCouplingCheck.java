@@ -19,20 +19,16 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.TokenSpanSet;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import com.sonar.sslr.api.Token;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 
-import java.util.List;
-import java.util.Set;
-
 @Rule(
   key = "ClassCoupling",
   priority = Priority.MAJOR)
@@ -46,7 +42,7 @@ public class ClassCouplingCheck extends SquidCheck<Grammar> {
     defaultValue = "" + DEFAULT_COUPLING_THRESHOLD)
   public int couplingThreshold = DEFAULT_COUPLING_THRESHOLD;
 
-  private final Set<String> types = Sets.newHashSet();
+  private final TokenSpanSet types = new TokenSpanSet();
 
   @Override
   public void init() {
@@ -60,7 +56,7 @@ public class ClassCouplingCheck extends SquidCheck<Grammar> {
     if (node.is(CSharpGrammar.CLASS_DECLARATION)) {
       types.clear();
     } else {
-      types.add(joinTokens(node.getTokens()));
+      types.add(node);
     }
   }
 
@@ -74,12 +70,4 @@ public class ClassCouplingCheck extends SquidCheck<Grammar> {
     }
   }
 
-  private String joinTokens(List<Token> tokens) {
-    StringBuilder sb = new StringBuilder();
-    for (Token token : tokens) {
-      sb.append(token.getOriginalValue());
-    }
-    return sb.toString();
-  }
-
 }
@@ -19,13 +19,18 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.base.Strings;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
 import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
 import org.sonar.check.Cardinality;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 
+import java.util.List;
+
 @Rule(
   key = "CommentRegularExpression",
   cardinality = Cardinality.MULTIPLE,
@@ -45,6 +50,35 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
     defaultValue = "" + DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  private CommentRegularExpressions regularExpressions;
+
+  @Override
+  public void init() {
+    super.init();
+    if (Strings.isNullOrEmpty(regularExpression)) {
+      regularExpressions = null;
+    } else {
+      regularExpressions = CommentRegularExpressions.of(getContext());
+      regularExpressions.register(this);
+    }
+  }
+
+  /**
+   * The comments are matched against the regular expressions of all the instances of this rule at once.
+   */
+  @Override
+  public void visitToken(Token token) {
+    if (regularExpressions == null) {
+      return;
+    }
+    List<Trivia> trivia = token.getTrivia();
+    for (int i = 0; i < trivia.size(); i++) {
+      if (trivia.get(i).isComment() && regularExpressions.matches(this, token, i)) {
+        getContext().createLineViolation(this, getMessage(), trivia.get(i).getToken());
+      }
+    }
+  }
+
   @Override
   public String getRegularExpression() {
     return regularExpression;
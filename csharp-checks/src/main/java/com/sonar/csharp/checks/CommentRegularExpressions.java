@@ -0,0 +1,314 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MapMaker;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import javax.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expressions of all the {@link CommentRegularExpressionCheck}s of a scan. Instead of running each regular expression against
+ * every comment, the literal which a regular expression requires in any comment it matches is extracted upfront, all the literals are
+ * looked for in a single pass over each comment, and only the regular expressions whose literal was found, or which have none, are run.
+ * The literals found in the comments of a token are kept while the checks visit this token.
+ */
+final class CommentRegularExpressions {
+
+  private static final ConcurrentMap<SquidAstVisitorContext<?>, CommentRegularExpressions> BY_CONTEXT = new MapMaker().weakKeys().makeMap();
+  private static final int NO_LITERAL = -1;
+  private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+
+  private final Map<CommentRegularExpressionCheck, Integer> indexes = Maps.newIdentityHashMap();
+  private final List<Pattern> patterns = Lists.newArrayList();
+  private final List<Integer> literalIndexes = Lists.newArrayList();
+  private final Map<String, Integer> literals = Maps.newLinkedHashMap();
+  private MultiPatternAutomaton automaton;
+
+  private Token lastToken;
+  private final List<BitSet> foundLiterals = Lists.newArrayList();
+
+  @VisibleForTesting
+  int searchedComments;
+
+  /**
+   * @return the regular expressions shared by the checks of the given context, every worker of a parallel scan having its own
+   */
+  static CommentRegularExpressions of(SquidAstVisitorContext<?> context) {
+    CommentRegularExpressions result = BY_CONTEXT.get(context);
+    if (result == null) {
+      CommentRegularExpressions created = new CommentRegularExpressions();
+      result = BY_CONTEXT.putIfAbsent(context, created);
+      if (result == null) {
+        result = created;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Registers the regular expression of the given check, which must be valid. Registering a check again only takes into account a
+   * change of its regular expression.
+   */
+  void register(CommentRegularExpressionCheck check) {
+    String regularExpression = check.getRegularExpression();
+    Integer index = indexes.get(check);
+    if (index == null) {
+      index = patterns.size();
+      indexes.put(check, index);
+      patterns.add(null);
+      literalIndexes.add(null);
+    } else if (patterns.get(index).pattern().equals(regularExpression)) {
+      return;
+    }
+
+    patterns.set(index, Pattern.compile(regularExpression, Pattern.DOTALL));
+    String literal = requiredLiteral(regularExpression);
+    if (literal == null) {
+      literalIndexes.set(index, NO_LITERAL);
+    } else {
+      literal = fold(literal);
+      if (!literals.containsKey(literal)) {
+        literals.put(literal, literals.size());
+      }
+      literalIndexes.set(index, literals.get(literal));
+    }
+    automaton = null;
+    lastToken = null;
+  }
+
+  /**
+   * @return true if the regular expression of the given registered check matches the whole value of the comment which is the trivia
+   * at the given index of the given token
+   */
+  boolean matches(CommentRegularExpressionCheck check, Token token, int triviaIndex) {
+    if (token != lastToken) {
+      findLiterals(token.getTrivia());
+      lastToken = token;
+    }
+
+    String comment = token.getTrivia().get(triviaIndex).getToken().getOriginalValue();
+    int index = indexes.get(check);
+    int literalIndex = literalIndexes.get(index);
+    return (literalIndex == NO_LITERAL || foundLiterals.get(triviaIndex).get(literalIndex)) && patterns.get(index).matcher(comment).matches();
+  }
+
+  private void findLiterals(List<Trivia> trivia) {
+    foundLiterals.clear();
+    for (Trivia t : trivia) {
+      foundLiterals.add(t.isComment() ? findLiterals(t.getToken().getOriginalValue()) : null);
+    }
+  }
+
+  private BitSet findLiterals(String comment) {
+    BitSet result = new BitSet();
+    if (literals.isEmpty()) {
+      return result;
+    }
+    if (automaton == null) {
+      automaton = new MultiPatternAutomaton(literals.keySet().toArray(new String[literals.size()]), false);
+    }
+
+    searchedComments++;
+    int state = MultiPatternAutomaton.ROOT;
+    for (int i = 0; i < comment.length(); i++) {
+      state = automaton.next(state, fold(comment.charAt(i)));
+      for (int literal : automaton.matches(state)) {
+        result.set(literal);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Regular expressions are compared regardless of case, as the case sensitivity can be changed by their embedded flags.
+   */
+  private static String fold(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      sb.append(fold(s.charAt(i)));
+    }
+    return sb.toString();
+  }
+
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * Conservatively extracts the longest sequence of ASCII characters which appears literally in any input matched by the given regular
+   * expression: groups, character classes and quantifiers interrupt a sequence, an optional character is dropped from it, and the
+   * extraction stops at the first escaped letter or digit. Alternatives at the top level, or whitespace and comments enabled by the
+   * embedded flag "x", lead to no literal at all.
+   *
+   * @return the literal, or null if none could be found
+   */
+  @Nullable
+  static String requiredLiteral(String regularExpression) {
+    if (COMMENTS_FLAG.matcher(regularExpression).find()) {
+      return null;
+    }
+
+    String longest = "";
+    StringBuilder current = new StringBuilder();
+    int i = 0;
+    while (i < regularExpression.length()) {
+      char c = regularExpression.charAt(i);
+      if (c == '|' || c == ')') {
+        return null;
+      } else if (c == '\\' && (i + 1 == regularExpression.length() || Character.isLetterOrDigit(regularExpression.charAt(i + 1)))) {
+        // Predefined classes, back references and quotations are not interpreted
+        break;
+      } else if (c == '\\' && regularExpression.charAt(i + 1) < 128) {
+        current.append(regularExpression.charAt(i + 1));
+        i += 2;
+      } else if (c < 128 && !isMetaCharacter(c)) {
+        current.append(c);
+        i++;
+      } else {
+        if (c == '?' || c == '*' || c == '{') {
+          // The last character is optional
+          current.setLength(Math.max(current.length() - 1, 0));
+        }
+        longest = longest(longest, current);
+        current.setLength(0);
+        i = skip(regularExpression, i);
+        if (i == -1) {
+          return null;
+        }
+      }
+    }
+    longest = longest(longest, current);
+    return longest.isEmpty() ? null : longest;
+  }
+
+  private static boolean isMetaCharacter(char c) {
+    return "\\()[]{}?*+.^$".indexOf(c) != -1;
+  }
+
+  private static String longest(String longest, StringBuilder current) {
+    return current.length() > longest.length() ? current.toString() : longest;
+  }
+
+  /**
+   * @return the index following the construct which starts with the given character, which is not part of a literal, or -1 if the
+   * construct could not be parsed
+   */
+  private static int skip(String regularExpression, int start) {
+    switch (regularExpression.charAt(start)) {
+      case '(':
+        return endOfGroup(regularExpression, start);
+      case '[':
+        return endOfClass(regularExpression, start);
+      case '?':
+      case '*':
+      case '+':
+      case '{':
+        return endOfQuantifier(regularExpression, start);
+      default:
+        return start + 1;
+    }
+  }
+
+  /**
+   * @return the index following the parenthesis which closes the group opened at the given index, or -1
+   */
+  private static int endOfGroup(String regularExpression, int start) {
+    int depth = 0;
+    int i = start;
+    while (i < regularExpression.length()) {
+      char c = regularExpression.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == '[') {
+        i = endOfClass(regularExpression, i);
+        if (i == -1) {
+          return -1;
+        }
+      } else {
+        if (c == '(') {
+          depth++;
+        } else if (c == ')' && --depth == 0) {
+          return i + 1;
+        }
+        i++;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the index following the bracket which closes the character class opened at the given index, or -1
+   */
+  private static int endOfClass(String regularExpression, int start) {
+    int depth = 0;
+    int i = start;
+    while (i < regularExpression.length()) {
+      char c = regularExpression.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else {
+        if (c == '[') {
+          depth++;
+          if (regularExpression.startsWith("^", i + 1)) {
+            i++;
+          }
+          if (regularExpression.startsWith("]", i + 1)) {
+            i++;
+          }
+        } else if (c == ']' && --depth == 0) {
+          return i + 1;
+        }
+        i++;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the index following the quantifier at the given index, including its reluctant or possessive suffix, or -1
+   */
+  private static int endOfQuantifier(String regularExpression, int start) {
+    int i = start;
+    if (regularExpression.charAt(i) == '{') {
+      i = regularExpression.indexOf('}', i);
+      if (i == -1) {
+        return -1;
+      }
+    }
+    i++;
+    if (i < regularExpression.length() && (regularExpression.charAt(i) == '?' || regularExpression.charAt(i) == '+')) {
+      i++;
+    }
+    return i;
+  }
+
+}
@@ -19,8 +19,6 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.collect.Sets;
-import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
@@ -29,15 +27,9 @@ import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.squidbridge.recognizer.CodeRecognizer;
-import org.sonar.squidbridge.recognizer.ContainsDetector;
-import org.sonar.squidbridge.recognizer.Detector;
-import org.sonar.squidbridge.recognizer.EndWithDetector;
-import org.sonar.squidbridge.recognizer.KeywordsDetector;
-import org.sonar.squidbridge.recognizer.LanguageFootprint;
 
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Rule(
   key = "CommentedCode",
@@ -46,24 +38,20 @@ import java.util.regex.Pattern;
 public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor {
 
   private static final double THRESHOLD = 0.94;
-
-  private final CodeRecognizer codeRecognizer = new CodeRecognizer(THRESHOLD, new CSharpRecognizer());
-  private final Pattern regexpToDivideStringByLine = Pattern.compile("(\r?\n)|(\r)");
-
-  private static class CSharpRecognizer implements LanguageFootprint {
-
-    public Set<Detector> getDetectors() {
-      Set<Detector> detectors = Sets.newHashSet();
-
-      detectors.add(new EndWithDetector(0.95, '}', ';', '{'));
-      detectors.add(new KeywordsDetector(0.7, "||", "&&"));
-      detectors.add(new KeywordsDetector(0.3, CSharpKeyword.keywordValues()));
-      detectors.add(new ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"));
-
-      return detectors;
+  private static final int NO_CODE = -1;
+  private static final int RECENT_COMMENTS = 64;
+
+  private final CSharpFootprint footprint = new CSharpFootprint(THRESHOLD);
+
+  /**
+   * Offset of the first line of commented out code of the recently checked comments, such as the license headers repeated in every file.
+   */
+  private final Map<String, Integer> recentComments = new LinkedHashMap<String, Integer>(RECENT_COMMENTS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+      return size() > RECENT_COMMENTS;
     }
-
-  }
+  };
 
   public void visitToken(Token token) {
     Trivia previousTrivia = null;
@@ -77,20 +65,47 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
   private void checkTrivia(Trivia previousTrivia, Trivia trivia) {
     if (isInlineComment(trivia)) {
 
-      if (isCommentedCode(getContext().getCommentAnalyser().getContents(trivia.getToken().getValue())) && !previousLineIsCommentedCode(trivia, previousTrivia)) {
+      if (commentedCodeLineOffset(trivia.getToken().getValue()) != NO_CODE && !previousLineIsCommentedCode(trivia, previousTrivia)) {
         reportIssue(trivia.getToken().getLine());
       }
 
     } else if (!trivia.getToken().getOriginalValue().startsWith("///")) {
-      String[] lines = regexpToDivideStringByLine.split(getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue()));
+      int lineOffset = commentedCodeLineOffset(trivia.getToken().getOriginalValue());
+      if (lineOffset != NO_CODE) {
+        reportIssue(trivia.getToken().getLine() + lineOffset);
+      }
+    }
+  }
+
+  private int commentedCodeLineOffset(String comment) {
+    Integer result = recentComments.get(comment);
+    if (result == null) {
+      result = firstCodeLineOffset(getContext().getCommentAnalyser().getContents(comment));
+      recentComments.put(comment, result);
+    }
+    return result;
+  }
 
-      for (int lineOffset = 0; lineOffset < lines.length; lineOffset++) {
-        if (isCommentedCode(lines[lineOffset])) {
-          reportIssue(trivia.getToken().getLine() + lineOffset);
-          break;
+  /**
+   * @return the offset of the first line of code of the given contents, whose lines are separated by "\r\n", "\r" or "\n"
+   */
+  private int firstCodeLineOffset(String contents) {
+    int lineOffset = 0;
+    int start = 0;
+    for (int i = 0; i < contents.length(); i++) {
+      char c = contents.charAt(i);
+      if (c == '\r' || c == '\n') {
+        if (isCommentedCode(contents, start, i)) {
+          return lineOffset;
+        }
+        if (c == '\r' && i + 1 < contents.length() && contents.charAt(i + 1) == '\n') {
+          i++;
         }
+        lineOffset++;
+        start = i + 1;
       }
     }
+    return isCommentedCode(contents, start, contents.length()) ? lineOffset : NO_CODE;
   }
 
   private void reportIssue(int line) {
@@ -103,7 +118,11 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
   }
 
   private boolean isCommentedCode(String line) {
-    return codeRecognizer.isLineOfCode(line);
+    return footprint.isLineOfCode(line);
+  }
+
+  private boolean isCommentedCode(String text, int start, int end) {
+    return footprint.isLineOfCode(text, start, end);
   }
 
   private boolean isInlineComment(Trivia trivia) {
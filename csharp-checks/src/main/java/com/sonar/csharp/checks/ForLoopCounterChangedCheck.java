@@ -20,6 +20,7 @@
 package com.sonar.csharp.checks;
 
 import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.TokenSpanSet;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
@@ -40,8 +41,9 @@ import java.util.Set;
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MAJOR)
 public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
 
-  private Set<String> counters = Sets.newHashSet();
+  private final TokenSpanSet counters = new TokenSpanSet();
   private Set<String> pendingCounters = Sets.newHashSet();
+  private final StringBuilder assignmentTargetName = new StringBuilder();
 
   @Override
   public void init() {
@@ -64,7 +66,9 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
     if (astNode.is(CSharpGrammar.FOR_STATEMENT)) {
       pendingCounters = getLoopsCounters(astNode);
     } else if (astNode.is(CSharpGrammar.STATEMENT)) {
-      counters.addAll(pendingCounters);
+      for (String counter : pendingCounters) {
+        counters.add(counter);
+      }
       pendingCounters = Collections.emptySet();
     } else if (!counters.isEmpty() && isAssignmentOrUnaryExpression(astNode)) {
       check(astNode);
@@ -74,16 +78,19 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
   @Override
   public void leaveNode(AstNode astNode) {
     if (astNode.is(CSharpGrammar.FOR_STATEMENT)) {
-      counters.removeAll(getLoopsCounters(astNode));
+      for (String counter : getLoopsCounters(astNode)) {
+        counters.remove(counter);
+      }
       pendingCounters = Collections.emptySet();
     }
   }
 
   private void check(AstNode node) {
-    String modifiedVar;
+    CharSequence modifiedVar;
 
     if (node.is(CSharpGrammar.ASSIGNMENT)) {
-      modifiedVar = getAssignmentTargetName(node);
+      assignmentTargetName.setLength(0);
+      modifiedVar = appendAssignmentTargetName(node, assignmentTargetName) ? assignmentTargetName : null;
     } else if (isPostExpression(node)) {
       modifiedVar = getModifiedVarByPostfixOp(node);
     } else {
@@ -92,7 +99,7 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
     }
 
     if (modifiedVar != null && counters.contains(modifiedVar)) {
-      reportIssue(node, modifiedVar);
+      reportIssue(node, modifiedVar.toString());
     }
   }
 
@@ -115,8 +122,9 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
         // Statement expression list
         for (AstNode expr : initializerChild.getChildren(CSharpGrammar.EXPRESSION)) {
           AstNode exprChild = expr.getFirstChild();
-          if (exprChild.is(CSharpGrammar.ASSIGNMENT)) {
-            counterList.add(getAssignmentTargetName(exprChild));
+          StringBuilder builder = new StringBuilder();
+          if (exprChild.is(CSharpGrammar.ASSIGNMENT) && appendAssignmentTargetName(exprChild, builder)) {
+            counterList.add(builder.toString());
           }
         }
       }
@@ -124,22 +132,24 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
     return counterList;
   }
 
-  private static String getAssignmentTargetName(AstNode assignment) {
+  /**
+   * Appends the name of the target of the assignment to the given builder, which is reused when looking for the modified counters.
+   *
+   * @return false if the target has no name
+   */
+  private static boolean appendAssignmentTargetName(AstNode assignment, StringBuilder builder) {
     AstNode primaryExpression = assignment.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET).getFirstChild(CSharpGrammar.PRIMARY_EXPRESSION);
-    String targetName = null;
 
     if (primaryExpression == null) {
-      return targetName;
+      return false;
     }
 
     AstNode primaryChild = primaryExpression.getFirstChild();
 
     if (primaryChild.is(CSharpGrammar.SIMPLE_NAME)) {
-      targetName = primaryExpression.getTokenValue();
+      builder.append(primaryExpression.getTokenValue());
 
     } else if (primaryChild.is(CSharpGrammar.POSTFIX_EXPRESSION)) {
-      StringBuilder builder = new StringBuilder();
-
       for (AstNode varMember : primaryChild.getChildren()) {
         if (varMember.is(CSharpGrammar.SIMPLE_NAME)) {
           builder.append(varMember.getTokenValue());
@@ -154,10 +164,11 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
           builder.append(CSharpPunctuator.RBRACKET);
         }
       }
-      targetName = builder.toString();
 
+    } else {
+      return false;
     }
-    return targetName;
+    return true;
   }
 
   private static String getModifiedVarByPostfixOp(AstNode unaryOperator) {
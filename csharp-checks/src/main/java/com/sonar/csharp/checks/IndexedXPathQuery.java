@@ -0,0 +1,192 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.xpath.AstNodeNavigator;
+import org.jaxen.BaseXPath;
+import org.jaxen.Context;
+import org.jaxen.ContextSupport;
+import org.jaxen.JaxenException;
+import org.jaxen.SimpleNamespaceContext;
+import org.jaxen.SimpleVariableContext;
+import org.jaxen.XPathFunctionContext;
+import org.jaxen.expr.AllNodeStep;
+import org.jaxen.expr.EqualityExpr;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.FunctionCallExpr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.LogicalExpr;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.Predicate;
+import org.jaxen.expr.RelationalExpr;
+import org.jaxen.expr.Step;
+import org.jaxen.expr.UnionExpr;
+import org.jaxen.function.BooleanFunction;
+import org.jaxen.saxpath.Axis;
+
+import javax.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * XPath query of the form "//NODE_TYPE[predicate]...", which selects the nodes of a given type satisfying some predicates. Instead of
+ * evaluating it on the whole tree of each file, the check which owns it subscribes to the node types, so that the nodes are given
+ * to it by the walk shared by all the visitors, and only evaluates the predicates, compiled once, on these nodes.
+ * <p>
+ * Predicates which may depend on the position of the nodes among their siblings are not supported.
+ * </p>
+ */
+final class IndexedXPathQuery {
+
+  private static final ListMultimap<String, AstNodeType> NODE_TYPES_BY_NAME = nodeTypesByName();
+  private static final Set<String> BOOLEAN_FUNCTIONS = ImmutableSet.of("not", "boolean", "true", "false", "contains", "starts-with", "ends-with", "lang");
+
+  private final String nodeName;
+  private final List<AstNodeType> nodeTypes;
+  private final List<Expr> predicates;
+  private final AstNodeNavigator navigator;
+  private final ContextSupport contextSupport;
+
+  private IndexedXPathQuery(String nodeName, List<AstNodeType> nodeTypes, List<Expr> predicates, AstNodeNavigator navigator) {
+    this.nodeName = nodeName;
+    this.nodeTypes = nodeTypes;
+    this.predicates = predicates;
+    this.navigator = navigator;
+    this.contextSupport = new ContextSupport(new SimpleNamespaceContext(), XPathFunctionContext.getInstance(), new SimpleVariableContext(), navigator);
+  }
+
+  /**
+   * @return the indexed query, or null if the given query is not of the supported form, or is invalid
+   */
+  @Nullable
+  static IndexedXPathQuery create(String xpath) {
+    AstNodeNavigator navigator = new AstNodeNavigator();
+    Expr expr;
+    try {
+      expr = new BaseXPath(xpath, navigator).getRootExpr();
+    } catch (JaxenException e) {
+      return null;
+    }
+    if (!(expr instanceof LocationPath) || !((LocationPath) expr).isAbsolute() || ((LocationPath) expr).getSteps().size() != 2) {
+      return null;
+    }
+
+    List<Step> steps = ((LocationPath) expr).getSteps();
+    if (!isDescendantOrSelfNodes(steps.get(0)) || !(steps.get(1) instanceof NameStep) || steps.get(1).getAxis() != Axis.CHILD) {
+      return null;
+    }
+    NameStep nameStep = (NameStep) steps.get(1);
+    List<AstNodeType> nodeTypes = NODE_TYPES_BY_NAME.get(nameStep.getLocalName());
+    if (!nameStep.getPrefix().isEmpty() || nodeTypes.isEmpty()) {
+      return null;
+    }
+
+    List<Expr> predicates = Lists.newArrayList();
+    for (Predicate predicate : (List<Predicate>) nameStep.getPredicates()) {
+      if (!isIndependentOfPosition(predicate.getExpr())) {
+        return null;
+      }
+      predicates.add(predicate.getExpr());
+    }
+    return new IndexedXPathQuery(nameStep.getLocalName(), ImmutableList.copyOf(nodeTypes), predicates, navigator);
+  }
+
+  private static boolean isDescendantOrSelfNodes(Step step) {
+    return step instanceof AllNodeStep && step.getAxis() == Axis.DESCENDANT_OR_SELF && step.getPredicates().isEmpty();
+  }
+
+  /**
+   * A predicate is evaluated as a boolean, unless its value is a number which is then compared to the position of the node.
+   */
+  private static boolean isIndependentOfPosition(Expr expr) {
+    String text = expr.getText();
+    if (text.contains("position(") || text.contains("last(")) {
+      return false;
+    }
+    return expr instanceof LocationPath
+      || expr instanceof UnionExpr
+      || expr instanceof LogicalExpr
+      || expr instanceof EqualityExpr
+      || expr instanceof RelationalExpr
+      || expr instanceof FunctionCallExpr && BOOLEAN_FUNCTIONS.contains(((FunctionCallExpr) expr).getFunctionName());
+  }
+
+  List<AstNodeType> getNodeTypes() {
+    return nodeTypes;
+  }
+
+  boolean matches(AstNode astNode) {
+    if (!nodeName.equals(astNode.getName())) {
+      return false;
+    }
+    if (predicates.isEmpty()) {
+      return true;
+    }
+
+    navigator.reset();
+    Context context = new Context(contextSupport);
+    context.setNodeSet(Collections.singletonList(astNode));
+    context.setPosition(1);
+    context.setSize(1);
+    try {
+      for (Expr predicate : predicates) {
+        if (!BooleanFunction.evaluate(predicate.evaluate(context), navigator)) {
+          return false;
+        }
+      }
+    } catch (JaxenException e) {
+      throw Throwables.propagate(e);
+    }
+    return true;
+  }
+
+  private static ListMultimap<String, AstNodeType> nodeTypesByName() {
+    ListMultimap<String, AstNodeType> result = ArrayListMultimap.create();
+    for (CSharpGrammar ruleKey : CSharpGrammar.values()) {
+      result.put(ruleKey.name(), ruleKey);
+    }
+    List<TokenType> tokenTypes = Lists.newArrayList();
+    tokenTypes.addAll(ImmutableList.copyOf(CSharpKeyword.values()));
+    tokenTypes.addAll(ImmutableList.copyOf(CSharpPunctuator.values()));
+    tokenTypes.addAll(ImmutableList.copyOf(CSharpTokenType.values()));
+    tokenTypes.addAll(ImmutableList.copyOf(GenericTokenType.values()));
+    for (TokenType tokenType : tokenTypes) {
+      result.put(tokenType.getName(), tokenType);
+    }
+    return result;
+  }
+
+}
@@ -21,9 +21,12 @@ package com.sonar.csharp.checks;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
+import com.sonar.csharp.squid.AncestorTracker;
+import com.sonar.csharp.squid.AncestorTrackerAwareVisitor;
 import com.sonar.csharp.squid.api.CSharpTokenType;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.check.Priority;
@@ -36,7 +39,7 @@ import java.util.Set;
 @Rule(
   key = "MagicNumber",
   priority = Priority.MINOR)
-public class MagicNumberCheck extends SquidCheck<Grammar> {
+public class MagicNumberCheck extends SquidCheck<Grammar> implements AncestorTrackerAwareVisitor {
 
   private static final String DEFAULT_EXCEPTIONS = "0,1,0x0,0x00,.0,.1,0.0,1.0";
 
@@ -46,9 +49,21 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
   public String exceptions = DEFAULT_EXCEPTIONS;
 
   private Set<String> exceptionsSet = Collections.EMPTY_SET;
+  private AncestorTracker ancestorTracker;
+
+  public void setAncestorTracker(AncestorTracker ancestorTracker) {
+    this.ancestorTracker = ancestorTracker;
+  }
 
   @Override
   public void init() {
+    if (ancestorTracker != null) {
+      ancestorTracker.track(
+          CSharpGrammar.LOCAL_VARIABLE_DECLARATOR,
+          CSharpGrammar.VARIABLE_DECLARATOR,
+          CSharpGrammar.CONSTANT_DECLARATOR,
+          CSharpGrammar.ENUM_DECLARATION);
+    }
     subscribeTo(
         CSharpTokenType.INTEGER_DEC_LITERAL,
         CSharpTokenType.INTEGER_HEX_LITERAL,
@@ -65,9 +80,9 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
   }
 
   private boolean isInDeclaration(AstNode node) {
-    return node.hasAncestor(CSharpGrammar.LOCAL_VARIABLE_DECLARATOR) ||
-      node.hasAncestor(CSharpGrammar.VARIABLE_DECLARATOR) ||
-      node.hasAncestor(CSharpGrammar.CONSTANT_DECLARATOR);
+    return isInside(node, CSharpGrammar.LOCAL_VARIABLE_DECLARATOR) ||
+      isInside(node, CSharpGrammar.VARIABLE_DECLARATOR) ||
+      isInside(node, CSharpGrammar.CONSTANT_DECLARATOR);
   }
 
   private boolean isExcluded(AstNode node) {
@@ -75,7 +90,14 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
   }
 
   private boolean isInEnum(AstNode node) {
-    return node.hasAncestor(CSharpGrammar.ENUM_DECLARATION);
+    return isInside(node, CSharpGrammar.ENUM_DECLARATION);
+  }
+
+  /**
+   * The ancestors of the node are walked up when the check is not run by a scanner which tracks them.
+   */
+  private boolean isInside(AstNode node, AstNodeType type) {
+    return ancestorTracker == null ? node.hasAncestor(type) : ancestorTracker.isInside(type);
   }
 
 }
@@ -0,0 +1,155 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over ASCII patterns, whose transitions are computed upfront for every character of the patterns, so that all the
+ * patterns are looked for in a single pass over the input. An anchored automaton only matches whole inputs, and then behaves like a trie:
+ * it is used to find the word a sequence of characters is equal to.
+ */
+final class MultiPatternAutomaton {
+
+  static final int ROOT = 0;
+  static final int NO_MATCH = -1;
+  private static final int DEAD = -1;
+  private static final int[] NO_MATCHES = new int[0];
+
+  private final boolean anchored;
+  private final int[] symbols = new int[128];
+  private final int[][] transitions;
+  private final int[] matches;
+  private final int[][] allMatches;
+
+  MultiPatternAutomaton(String[] patterns, boolean anchored) {
+    this.anchored = anchored;
+
+    Arrays.fill(symbols, -1);
+    int symbolCount = 0;
+    for (String pattern : patterns) {
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = pattern.charAt(i);
+        Preconditions.checkArgument(c < symbols.length, "Only ASCII patterns are supported: %s", pattern);
+        if (symbols[c] == -1) {
+          symbols[c] = symbolCount++;
+        }
+      }
+    }
+
+    // Trie
+    List<int[]> trie = Lists.newArrayList();
+    List<Integer> patternOfState = Lists.newArrayList();
+    trie.add(newState(symbolCount));
+    patternOfState.add(NO_MATCH);
+    for (int p = 0; p < patterns.length; p++) {
+      int state = ROOT;
+      for (int i = 0; i < patterns[p].length(); i++) {
+        int symbol = symbols[patterns[p].charAt(i)];
+        if (trie.get(state)[symbol] == DEAD) {
+          trie.get(state)[symbol] = trie.size();
+          trie.add(newState(symbolCount));
+          patternOfState.add(NO_MATCH);
+        }
+        state = trie.get(state)[symbol];
+      }
+      if (patternOfState.get(state) == NO_MATCH) {
+        patternOfState.set(state, p);
+      }
+    }
+
+    transitions = trie.toArray(new int[trie.size()][]);
+    matches = Ints.toArray(patternOfState);
+    allMatches = new int[transitions.length][];
+    if (anchored) {
+      return;
+    }
+
+    // Failure links, in breadth-first order, folded into the transitions
+    int[] failures = new int[transitions.length];
+    int[] queue = new int[transitions.length];
+    int head = 0;
+    int tail = 0;
+    allMatches[ROOT] = NO_MATCHES;
+    for (int symbol = 0; symbol < symbolCount; symbol++) {
+      int next = transitions[ROOT][symbol];
+      if (next == DEAD) {
+        transitions[ROOT][symbol] = ROOT;
+      } else {
+        failures[next] = ROOT;
+        queue[tail++] = next;
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      allMatches[state] = matches[state] == NO_MATCH ? allMatches[failures[state]] : prepend(matches[state], allMatches[failures[state]]);
+      for (int symbol = 0; symbol < symbolCount; symbol++) {
+        int next = transitions[state][symbol];
+        if (next == DEAD) {
+          transitions[state][symbol] = transitions[failures[state]][symbol];
+        } else {
+          failures[next] = transitions[failures[state]][symbol];
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  private static int[] newState(int symbolCount) {
+    int[] state = new int[symbolCount];
+    Arrays.fill(state, DEAD);
+    return state;
+  }
+
+  private static int[] prepend(int match, int[] matches) {
+    int[] result = new int[matches.length + 1];
+    result[0] = match;
+    System.arraycopy(matches, 0, result, 1, matches.length);
+    return result;
+  }
+
+  int next(int state, char c) {
+    int symbol = c < symbols.length ? symbols[c] : -1;
+    if (anchored) {
+      return state == DEAD || symbol == -1 ? DEAD : transitions[state][symbol];
+    }
+    return symbol == -1 ? ROOT : transitions[state][symbol];
+  }
+
+  /**
+   * @return the pattern which is equal to the input read by an anchored automaton, or {@link #NO_MATCH}
+   */
+  int match(int state) {
+    return state == DEAD ? NO_MATCH : matches[state];
+  }
+
+  /**
+   * @return the patterns which end at the last character read by an automaton which is not anchored
+   */
+  int[] matches(int state) {
+    return allMatches[state];
+  }
+
+}
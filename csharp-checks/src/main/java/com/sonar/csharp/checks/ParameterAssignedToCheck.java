@@ -20,13 +20,13 @@
 package com.sonar.csharp.checks;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.TokenSpanSet;
+import com.sonar.csharp.squid.TokenSpans;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
-import com.sonar.sslr.api.Token;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
@@ -42,7 +42,7 @@ import java.util.Set;
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MAJOR)
 public class ParameterAssignedToCheck extends SquidCheck<Grammar> {
 
-  private final Set<String> parameters = Sets.newHashSet();
+  private final TokenSpanSet parameters = new TokenSpanSet();
 
   @Override
   public void init() {
@@ -60,20 +60,24 @@ public class ParameterAssignedToCheck extends SquidCheck<Grammar> {
   @Override
   public void visitNode(AstNode node) {
     if (node.is(CSharpGrammar.ASSIGNMENT)) {
-      String target = getAssignmentTarget(node);
+      AstNode target = node.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET);
 
-      if (parameters.contains(target)) {
-        getContext().createLineViolation(this, "Remove this assignment to the method parameter '" + target + "'.", node);
+      if (!parameters.isEmpty() && parameters.contains(target)) {
+        getContext().createLineViolation(this, "Remove this assignment to the method parameter '" + TokenSpans.toString(target) + "'.", node);
       }
     } else {
-      parameters.addAll(getNonOutNorRefParameters(node));
+      for (String parameter : getNonOutNorRefParameters(node)) {
+        parameters.add(parameter);
+      }
     }
   }
 
   @Override
   public void leaveNode(AstNode node) {
     if (!node.is(CSharpGrammar.ASSIGNMENT)) {
-      parameters.removeAll(getNonOutNorRefParameters(node));
+      for (String parameter : getNonOutNorRefParameters(node)) {
+        parameters.remove(parameter);
+      }
     }
   }
 
@@ -184,16 +188,4 @@ public class ParameterAssignedToCheck extends SquidCheck<Grammar> {
     return builder.build();
   }
 
-  private String getAssignmentTarget(AstNode node) {
-    return joinTokens(node.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET).getTokens());
-  }
-
-  private String joinTokens(List<Token> tokens) {
-    StringBuilder sb = new StringBuilder();
-    for (Token token : tokens) {
-      sb.append(token.getOriginalValue());
-    }
-    return sb.toString();
-  }
-
 }
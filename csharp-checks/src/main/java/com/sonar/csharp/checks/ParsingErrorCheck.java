@@ -19,6 +19,8 @@
  */
 package com.sonar.csharp.checks;
 
+import com.sonar.csharp.squid.parser.UnparsedFile;
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
 import org.sonar.squidbridge.AstScannerExceptionHandler;
@@ -34,6 +36,18 @@ import java.io.StringWriter;
   priority = Priority.MAJOR)
 public class ParsingErrorCheck extends SquidCheck<Grammar> implements AstScannerExceptionHandler {
 
+  @Override
+  public void init() {
+    subscribeTo(UnparsedFile.TIMEOUT, UnparsedFile.TOO_MANY_TOKENS);
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    String budget = astNode.is(UnparsedFile.TIMEOUT) ? "time" : "number of tokens";
+    getContext().createFileViolation(this, "The parsing of this file exceeded the allowed " + budget + ": only its lines, lines of code and comment "
+      + "lines are measured.");
+  }
+
   @Override
   public void processException(Exception e) {
     StringWriter exception = new StringWriter();
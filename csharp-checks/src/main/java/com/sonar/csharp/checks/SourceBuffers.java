@@ -0,0 +1,57 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.sonar.csharp.squid.SourceBuffer;
+import org.sonar.api.utils.SonarException;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Source buffers of the line based checks.
+ */
+final class SourceBuffers {
+
+  private SourceBuffers() {
+  }
+
+  /**
+   * @return the given shared buffer if it holds the given file, or else a new buffer into which the file is read again: the check is
+   * not run by {@link com.sonar.csharp.squid.scanner.CSharpAstScanner}, or the parser could not read the file
+   */
+  static SourceBuffer of(File file, @Nullable SourceBuffer sharedBuffer, Charset charset) {
+    if (sharedBuffer != null && file.equals(sharedBuffer.getFile())) {
+      return sharedBuffer;
+    }
+
+    SourceBuffer result = new SourceBuffer(charset);
+    try {
+      result.read(file);
+    } catch (IOException e) {
+      throw new SonarException("Unable to read " + file, e);
+    }
+    return result;
+  }
+
+}
@@ -19,27 +19,30 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.io.Files;
 import com.sonar.csharp.squid.CharsetAwareVisitor;
+import com.sonar.csharp.squid.SourceBuffer;
+import com.sonar.csharp.squid.SourceBufferAwareVisitor;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.api.utils.SonarException;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 
-import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
 
 @Rule(
   key = "TabCharacter",
   priority = Priority.MINOR)
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MINOR)
-public class TabCharacterCheck extends SquidCheck<Grammar> implements CharsetAwareVisitor {
+public class TabCharacterCheck extends SquidCheck<Grammar> implements SourceBufferAwareVisitor, CharsetAwareVisitor {
 
-  private Charset charset;
+  private SourceBuffer sourceBuffer;
+  private Charset charset = Charset.defaultCharset();
+
+  public void setSourceBuffer(SourceBuffer sourceBuffer) {
+    this.sourceBuffer = sourceBuffer;
+  }
 
   public void setCharset(Charset charset) {
     this.charset = charset;
@@ -47,17 +50,10 @@ public class TabCharacterCheck extends SquidCheck<Grammar> implements CharsetAwa
 
   @Override
   public void visitFile(AstNode astNode) {
-    List<String> lines;
-    try {
-      lines = Files.readLines(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw new SonarException(e);
-    }
-    for (int i = 0; i < lines.size(); i++) {
-      if (lines.get(i).contains("\t")) {
-        getContext().createLineViolation(this, "Replace all tab characters in this file by sequences of white-spaces.", i + 1);
-        break;
-      }
+    SourceBuffer buffer = SourceBuffers.of(getContext().getFile(), sourceBuffer, charset);
+    int tab = buffer.getContents().indexOf('\t');
+    if (tab != -1) {
+      getContext().createLineViolation(this, "Replace all tab characters in this file by sequences of white-spaces.", buffer.getLine(tab));
     }
   }
 
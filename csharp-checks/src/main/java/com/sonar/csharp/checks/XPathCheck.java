@@ -20,6 +20,7 @@
 package com.sonar.csharp.checks;
 
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.checks.AbstractXPathCheck;
 import org.sonar.check.Cardinality;
@@ -27,6 +28,8 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 
+import java.util.List;
+
 @Rule(
   key = "XPath",
   priority = Priority.MAJOR,
@@ -46,6 +49,8 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
     defaultValue = "" + DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  private IndexedXPathQuery indexedQuery;
+
   @Override
   public String getXPathQuery() {
     return xpathQuery;
@@ -56,11 +61,33 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
     return message;
   }
 
+  /**
+   * Queries such as "//NODE_TYPE[predicate]" are evaluated on the nodes of the subscribed types, during the walk shared by all the checks,
+   * rather than on the whole tree.
+   */
+  @Override
+  public void init() {
+    indexedQuery = IndexedXPathQuery.create(xpathQuery);
+    if (indexedQuery == null) {
+      super.init();
+    } else {
+      List<AstNodeType> nodeTypes = indexedQuery.getNodeTypes();
+      subscribeTo(nodeTypes.toArray(new AstNodeType[nodeTypes.size()]));
+    }
+  }
+
   @Override
   public void visitFile(AstNode fileNode) {
-    if (fileNode != null) {
+    if (fileNode != null && indexedQuery == null) {
       super.visitFile(fileNode);
     }
   }
 
+  @Override
+  public void visitNode(AstNode astNode) {
+    if (indexedQuery.matches(astNode)) {
+      getContext().createLineViolation(this, getMessage(), astNode.getTokenLine());
+    }
+  }
+
 }
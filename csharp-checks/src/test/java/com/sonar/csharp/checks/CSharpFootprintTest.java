@@ -0,0 +1,106 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.recognizer.CodeRecognizer;
+import org.sonar.squidbridge.recognizer.ContainsDetector;
+import org.sonar.squidbridge.recognizer.Detector;
+import org.sonar.squidbridge.recognizer.EndWithDetector;
+import org.sonar.squidbridge.recognizer.KeywordsDetector;
+import org.sonar.squidbridge.recognizer.LanguageFootprint;
+
+import java.io.File;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpFootprintTest {
+
+  private static final double THRESHOLD = 0.94;
+
+  private final CSharpFootprint footprint = new CSharpFootprint(THRESHOLD);
+  private final CodeRecognizer codeRecognizer = new CodeRecognizer(THRESHOLD, new LanguageFootprint() {
+    @Override
+    public Set<Detector> getDetectors() {
+      return ImmutableSet.of(
+        new EndWithDetector(0.95, '}', ';', '{'),
+        new KeywordsDetector(0.7, "||", "&&"),
+        new KeywordsDetector(0.3, CSharpKeyword.keywordValues()),
+        new ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"));
+    }
+  });
+
+  @Test
+  public void lines() {
+    assertSameAsCodeRecognizer("");
+    assertSameAsCodeRecognizer("Some text.");
+    assertSameAsCodeRecognizer("int i = 0;");
+    assertSameAsCodeRecognizer("int i = 0; */");
+    assertSameAsCodeRecognizer("if (a) {");
+    assertSameAsCodeRecognizer("}//");
+    assertSameAsCodeRecognizer("i+++");
+    assertSameAsCodeRecognizer("i++++");
+    assertSameAsCodeRecognizer("i + + ;");
+    assertSameAsCodeRecognizer("a || b && c");
+    assertSameAsCodeRecognizer("a||b");
+    assertSameAsCodeRecognizer("for(int i;;) while (x) try { } else { }");
+    assertSameAsCodeRecognizer("public static void Main(string[] args)");
+    assertSameAsCodeRecognizer("return;");
+    assertSameAsCodeRecognizer("\tpublic\tclass\tA");
+    assertSameAsCodeRecognizer("café for (");
+    assertSameAsCodeRecognizer("switch(switch(");
+
+    assertThat(footprint.isLineOfCode("int i = 0;")).isTrue();
+    assertThat(footprint.isLineOfCode("Some text.")).isFalse();
+    assertThat(footprint.isLineOfCode("xx int i = 0; xx", 3, 13)).isTrue();
+  }
+
+  @Test
+  public void comments() {
+    Lexer lexer = CSharpLexer.create();
+    int lines = 0;
+    for (File file : FileUtils.listFiles(new File("../csharp-squid/src/test/resources"), new String[] {"cs"}, true)) {
+      for (Token token : lexer.lex(file)) {
+        for (Trivia trivia : token.getTrivia()) {
+          if (trivia.isComment()) {
+            for (String line : trivia.getToken().getOriginalValue().split("\r\n|\r|\n")) {
+              assertSameAsCodeRecognizer(line);
+              lines++;
+            }
+          }
+        }
+      }
+    }
+    assertThat(lines).isGreaterThan(1000);
+  }
+
+  private void assertSameAsCodeRecognizer(String line) {
+    assertThat(footprint.isLineOfCode(line)).as(line).isEqualTo(codeRecognizer.isLineOfCode(line));
+  }
+
+}
@@ -19,12 +19,33 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import org.apache.commons.io.FileUtils;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
 import org.sonar.squidbridge.checks.CheckMessagesVerifier;
 import org.junit.Test;
+import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
 
 import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
 
 public class CommentRegularExpressionCheckTest {
 
@@ -42,4 +63,122 @@ public class CommentRegularExpressionCheckTest {
         .noMore();
   }
 
+  @Test
+  public void several_instances() {
+    CommentRegularExpressionCheck todo = check("(?i).*TODO.*", "Avoid TODO");
+    CommentRegularExpressionCheck fixme = check("(?i).*fixme.*", "Avoid FIXME");
+    CommentRegularExpressionCheck ticket = check(".*JIRA-\\d+.*", "Ticket");
+    CommentRegularExpressionCheck disabled = check("", "Disabled");
+
+    SourceFile file = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/commentRegularExpressions.cs"), todo, fixme, ticket, disabled);
+    CheckMessagesVerifier.verify(file.getCheckMessages())
+        .next().atLine(5).withMessage("Avoid TODO")
+        .next().atLine(6).withMessage("Avoid FIXME")
+        .next().atLine(6).withMessage("Ticket")
+        .next().atLine(8).withMessage("Avoid TODO")
+        .next().atLine(8).withMessage("Ticket")
+        .next().atLine(14).withMessage("Avoid FIXME")
+        .next().atLine(14).withMessage("Avoid TODO")
+        .noMore();
+  }
+
+  @Test
+  public void literals_searched_once_per_comment() throws Exception {
+    CommentRegularExpressionCheck todo = check("(?i).*TODO.*", "Avoid TODO");
+    CommentRegularExpressionCheck fixme = check("(?i).*fixme.*", "Avoid FIXME");
+    CommentRegularExpressions regularExpressions = new CommentRegularExpressions();
+    regularExpressions.register(todo);
+    regularExpressions.register(fixme);
+
+    Token token = token(GenericTokenType.IDENTIFIER, "foo")
+        .addTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "// TODO").build()))
+        .addTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "// nothing").build()))
+        .addTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "/* fixme */").build()))
+        .build();
+    for (CommentRegularExpressionCheck check : new CommentRegularExpressionCheck[] {todo, fixme}) {
+      for (int i = 0; i < token.getTrivia().size(); i++) {
+        assertThat(regularExpressions.matches(check, token, i)).isEqualTo(check == todo ? i == 0 : i == 2);
+      }
+    }
+    assertThat(regularExpressions.searchedComments).isEqualTo(3);
+  }
+
+  private static Token.Builder token(TokenType type, String value) throws URISyntaxException {
+    return Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(1)
+        .setColumn(0);
+  }
+
+  @Test
+  public void required_literal() {
+    assertThat(CommentRegularExpressions.requiredLiteral("(?i).*TODO.*")).isEqualTo("TODO");
+    assertThat(CommentRegularExpressions.requiredLiteral(".*JIRA-\\d+.*")).isEqualTo("JIRA-");
+    assertThat(CommentRegularExpressions.requiredLiteral("ab(cdefgh)ij")).isEqualTo("ab");
+    assertThat(CommentRegularExpressions.requiredLiteral("a[bcdefgh]ij")).isEqualTo("ij");
+    assertThat(CommentRegularExpressions.requiredLiteral("abcd?e")).isEqualTo("abc");
+    assertThat(CommentRegularExpressions.requiredLiteral("abcd*e")).isEqualTo("abc");
+    assertThat(CommentRegularExpressions.requiredLiteral("abcd{0,2}e")).isEqualTo("abc");
+    assertThat(CommentRegularExpressions.requiredLiteral("abc+?de")).isEqualTo("abc");
+    assertThat(CommentRegularExpressions.requiredLiteral("a\\.b\\*cd")).isEqualTo("a.b*cd");
+    assertThat(CommentRegularExpressions.requiredLiteral("ab\\Qcdef\\E")).isEqualTo("ab");
+    assertThat(CommentRegularExpressions.requiredLiteral("a\u00e9bc")).isEqualTo("bc");
+
+    assertThat(CommentRegularExpressions.requiredLiteral("")).isNull();
+    assertThat(CommentRegularExpressions.requiredLiteral(".*")).isNull();
+    assertThat(CommentRegularExpressions.requiredLiteral("TODO|FIXME")).isNull();
+    assertThat(CommentRegularExpressions.requiredLiteral("(?x)TODO")).isNull();
+    assertThat(CommentRegularExpressions.requiredLiteral("(?i:x)TODO")).isEqualTo("TODO");
+  }
+
+  @Test
+  public void same_issues_as_each_regular_expression_evaluated_separately() {
+    String[] regularExpressions = {"(?i).*TODO.*", ".*\\bcopyright\\b.*", "(?i).*copyright.*", ".*License.*", "//.*", "/\\*.*",
+      "(?i).*(fix|hack).*", ".*[Ss]ee .*", ".*<summary>.*", "[^x]*+", "(?iu).*\u00e9.*"};
+
+    List<SquidAstVisitor<Grammar>> checks = Lists.newArrayList();
+    List<SquidAstVisitor<Grammar>> references = Lists.newArrayList();
+    for (final String regularExpression : regularExpressions) {
+      checks.add(check(regularExpression, regularExpression));
+      references.add(new AbstractCommentRegularExpressionCheck<Grammar>() {
+        @Override
+        public String getRegularExpression() {
+          return regularExpression;
+        }
+
+        @Override
+        public String getMessage() {
+          return regularExpression;
+        }
+      });
+    }
+
+    List<String> issues = scan(checks);
+    assertThat(issues.size()).isGreaterThan(100);
+    assertThat(issues).isEqualTo(scan(references));
+  }
+
+  private static List<String> scan(List<SquidAstVisitor<Grammar>> checks) {
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(new CSharpConfiguration(Charsets.UTF_8), checks.toArray(new SquidAstVisitor[checks.size()]));
+    scanner.scanFiles(FileUtils.listFiles(new File("../csharp-squid/src/test/resources/integration"), new String[] {"cs"}, true));
+
+    List<String> issues = Lists.newArrayList();
+    for (SourceCode file : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      for (CheckMessage message : file.getCheckMessages()) {
+        issues.add(file.getKey() + ":" + message.getLine() + " " + message.getDefaultMessage());
+      }
+    }
+    Collections.sort(issues);
+    return issues;
+  }
+
+  private static CommentRegularExpressionCheck check(String regularExpression, String message) {
+    CommentRegularExpressionCheck check = new CommentRegularExpressionCheck();
+    check.regularExpression = regularExpression;
+    check.message = message;
+    return check;
+  }
+
 }
@@ -19,6 +19,7 @@
  */
 package com.sonar.csharp.checks;
 
+import com.sonar.csharp.squid.SourceBuffer;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
@@ -40,6 +41,19 @@ public class LineLengthCheckTest {
         .next().atLine(3).withMessage("Split this 257 characters long line (which is greater than 200 authorized).");
   }
 
+  @Test
+  public void file_read_again_without_its_shared_buffer() {
+    LineLengthCheck check = new LineLengthCheck() {
+      @Override
+      public void setSourceBuffer(SourceBuffer sourceBuffer) {
+        super.setSourceBuffer(null);
+      }
+    };
+    SourceFile file = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/lineLength.cs"), check);
+    checkMessagesVerifier.verify(file.getCheckMessages())
+        .next().atLine(3).withMessage("Split this 257 characters long line (which is greater than 200 authorized).");
+  }
+
   @Test
   public void custom() {
     LineLengthCheck check = new LineLengthCheck();
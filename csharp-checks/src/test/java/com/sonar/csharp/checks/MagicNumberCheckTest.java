@@ -19,6 +19,7 @@
  */
 package com.sonar.csharp.checks;
 
+import com.sonar.csharp.squid.AncestorTracker;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
@@ -40,6 +41,20 @@ public class MagicNumberCheckTest {
         .next().atLine(16).withMessage("Extract this magic number into a constant, variable declaration or an enum.");
   }
 
+  @Test
+  public void without_ancestor_tracker() {
+    MagicNumberCheck check = new MagicNumberCheck() {
+      @Override
+      public void setAncestorTracker(AncestorTracker ancestorTracker) {
+        // the ancestors of the numbers are walked up instead
+      }
+    };
+    SourceFile file = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/magicNumber.cs"), check);
+
+    checkMessagesVerifier.verify(file.getCheckMessages())
+        .next().atLine(16).withMessage("Extract this magic number into a constant, variable declaration or an enum.");
+  }
+
   @Test
   public void custom() {
     MagicNumberCheck check = new MagicNumberCheck();
@@ -19,6 +19,8 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
@@ -40,4 +42,15 @@ public class ParsingErrorCheckTest {
       .next().atLine(8);
   }
 
+  @Test
+  public void parse_budget_exceeded() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTokenLimit(1);
+    SourceFile file = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/parsingError.cs"), conf, new ParsingErrorCheck());
+
+    checkMessagesVerifier.verify(file.getCheckMessages())
+      .next().atLine(null).withMessage("The parsing of this file exceeded the allowed number of tokens: only its lines, lines of code and comment "
+        + "lines are measured.");
+  }
+
 }
@@ -19,6 +19,8 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.SourceBuffer;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
@@ -40,4 +42,19 @@ public class TabCharacterCheckTest {
         .next().atLine(7).withMessage("Replace all tab characters in this file by sequences of white-spaces.");
   }
 
+  @Test
+  public void file_read_again_when_shared_buffer_holds_another_file() throws Exception {
+    final SourceBuffer otherFileBuffer = new SourceBuffer(Charsets.UTF_8);
+    otherFileBuffer.read(new File("src/test/resources/checks/lineLength.cs"));
+    TabCharacterCheck check = new TabCharacterCheck() {
+      @Override
+      public void setSourceBuffer(SourceBuffer sourceBuffer) {
+        super.setSourceBuffer(otherFileBuffer);
+      }
+    };
+    SourceFile file = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/tabCharacter.cs"), check);
+    checkMessagesVerifier.verify(file.getCheckMessages())
+        .next().atLine(7).withMessage("Replace all tab characters in this file by sequences of white-spaces.");
+  }
+
 }
@@ -19,13 +19,23 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.parser.CSharpParserPool;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.squidbridge.api.SourceFile;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
 
 public class XPathCheckTest {
 
@@ -43,4 +53,54 @@ public class XPathCheckTest {
         .next().atLine(7).withMessage("Avoid identifiers which are too long!");
   }
 
+  @Test
+  public void indexed_queries() {
+    assertThat(IndexedXPathQuery.create("//IDENTIFIER[string-length(@tokenValue) >= 10]")).isNotNull();
+    assertThat(IndexedXPathQuery.create("//CLASS_DECLARATION")).isNotNull();
+    assertThat(IndexedXPathQuery.create("//METHOD_DECLARATION[.//RETURN][not(.//THROW)]")).isNotNull();
+
+    assertThat(IndexedXPathQuery.create("")).isNull();
+    assertThat(IndexedXPathQuery.create("//UNKNOWN_NODE_TYPE")).isNull();
+    assertThat(IndexedXPathQuery.create("//*")).isNull();
+    assertThat(IndexedXPathQuery.create("//CLASS_DECLARATION//IDENTIFIER")).isNull();
+    assertThat(IndexedXPathQuery.create("/COMPILATION_UNIT")).isNull();
+    assertThat(IndexedXPathQuery.create("count(//IDENTIFIER) > 10")).isNull();
+    assertThat(IndexedXPathQuery.create("//IDENTIFIER[1]")).isNull();
+    assertThat(IndexedXPathQuery.create("//IDENTIFIER[position() > 1 and @tokenValue = 'a']")).isNull();
+    assertThat(IndexedXPathQuery.create("//IDENTIFIER[string-length(@tokenValue)]")).isNull();
+  }
+
+  @Test
+  public void same_issues_as_whole_tree_evaluation() {
+    String[] queries = {
+      "//IDENTIFIER[string-length(@tokenValue) >= 10]",
+      "//CLASS_DECLARATION",
+      "//METHOD_DECLARATION[.//RETURN][not(.//THROW)]",
+      "//IF_STATEMENT[@tokenLine > 10 or ELSE]",
+      "//STRING_LITERAL[contains(@tokenValue, 'a')]",
+      "//IDENTIFIER[1]",
+      "//CLASS_DECLARATION//IDENTIFIER"};
+    File file = new File("../csharp-squid/src/test/resources/parser/LinqBridge-1.2.cs");
+    AstNode tree = CSharpParserPool.get(new CSharpConfiguration()).borrow().parse(file);
+
+    for (String query : queries) {
+      XPathCheck check = new XPathCheck();
+      check.xpathQuery = query;
+      List<Integer> lines = Lists.newArrayList();
+      for (CheckMessage message : CSharpAstScanner.scanSingleFile(file, check).getCheckMessages()) {
+        lines.add(message.getLine());
+      }
+      Collections.sort(lines);
+
+      List<Integer> expectedLines = Lists.newArrayList();
+      for (Object node : AstNodeXPathQuery.create(query).selectNodes(tree)) {
+        expectedLines.add(((AstNode) node).getTokenLine());
+      }
+      Collections.sort(expectedLines);
+
+      assertThat(lines).as(query).isEqualTo(expectedLines);
+      assertThat(lines).as(query).isNotEmpty();
+    }
+  }
+
 }
@@ -0,0 +1,15 @@
+using System;
+
+class Program
+{
+  // TODO: remove
+  int a; // fixme JIRA-123
+
+  /*
+   * Fixed by JIRA-45, todo later
+   */
+  int b; // Nothing to do here
+
+  // JIRA- without number
+  int c; /* FIXME */ // todo
+}
@@ -0,0 +1,96 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Visitor which keeps, for each tracked node type, the nodes of that type enclosing the node being visited, so that the visitors
+ * registered after it can tell whether they are inside a node of some type without walking up the parents of the nodes they visit.
+ * The node being visited is one of its enclosing nodes, from its visit until its leave.
+ */
+public class AncestorTracker extends SquidAstVisitor<Grammar> {
+
+  private final Map<AstNodeType, List<AstNode>> enclosingNodes = Maps.newIdentityHashMap();
+
+  /**
+   * Starts tracking the nodes of the given types, typically from the {@link #init()} of a visitor.
+   */
+  public void track(AstNodeType... types) {
+    for (AstNodeType type : types) {
+      if (!enclosingNodes.containsKey(type)) {
+        enclosingNodes.put(type, Lists.<AstNode>newArrayList());
+        subscribeTo(type);
+      }
+    }
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    for (List<AstNode> nodes : enclosingNodes.values()) {
+      nodes.clear();
+    }
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    enclosingNodes.get(astNode.getType()).add(astNode);
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    List<AstNode> nodes = enclosingNodes.get(astNode.getType());
+    nodes.remove(nodes.size() - 1);
+  }
+
+  /**
+   * @return true if a node of the given tracked type encloses the node being visited
+   */
+  public boolean isInside(AstNodeType type) {
+    return !getEnclosingNodes(type).isEmpty();
+  }
+
+  /**
+   * @return the innermost node of the given tracked type which encloses the node being visited, or null
+   */
+  @Nullable
+  public AstNode getInnermost(AstNodeType type) {
+    List<AstNode> nodes = getEnclosingNodes(type);
+    return nodes.isEmpty() ? null : nodes.get(nodes.size() - 1);
+  }
+
+  private List<AstNode> getEnclosingNodes(AstNodeType type) {
+    List<AstNode> nodes = enclosingNodes.get(type);
+    Preconditions.checkState(nodes != null, "The nodes of type %s are not tracked", type);
+    return nodes;
+  }
+
+}
@@ -19,13 +19,25 @@
  */
 package com.sonar.csharp.squid;
 
+import com.google.common.collect.ImmutableSet;
+import com.sonar.csharp.squid.parser.MemoizationPolicy;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
+import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Set;
 
 public class CSharpConfiguration extends SquidConfiguration {
 
   private boolean ignoreHeaderComments = true;
+  private int threads = 1;
+  private File profilingReport;
+  private boolean stateMachineLexer;
+  private MemoizationPolicy memoizationPolicy = MemoizationPolicy.CURATED;
+  private long parseTimeout;
+  private int parseTokenLimit;
+  private Set<String> definedSymbols = ImmutableSet.of("DEBUG", "TRACE");
 
   public CSharpConfiguration(Charset charset) {
     super(charset);
@@ -43,4 +55,100 @@ public class CSharpConfiguration extends SquidConfiguration {
     return ignoreHeaderComments;
   }
 
+  /**
+   * Sets the number of worker threads used to scan files, a value of 1 (the default) means sequential scanning.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of threads must be greater than or equal to 1, but was: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Enables the measurement of the time spent in each phase of the scan and in each visitor, the report being written to the given
+   * file at the end of the scan. Set to null (the default) to disable it.
+   */
+  public void setProfilingReport(File profilingReport) {
+    this.profilingReport = profilingReport;
+  }
+
+  public File getProfilingReport() {
+    return profilingReport;
+  }
+
+  /**
+   * Selects the hand-written state machine lexer instead of the one made of regular expression channels (the default).
+   * Both produce the same tokens, but only the state machine lexer shares the values of the tokens of a same identifier.
+   */
+  public void setStateMachineLexer(boolean stateMachineLexer) {
+    this.stateMachineLexer = stateMachineLexer;
+  }
+
+  public boolean getStateMachineLexer() {
+    return stateMachineLexer;
+  }
+
+  /**
+   * Sets the rules whose matches are memoized by the parser, {@link MemoizationPolicy#CURATED} by default.
+   */
+  public void setMemoizationPolicy(MemoizationPolicy memoizationPolicy) {
+    if (memoizationPolicy == null) {
+      throw new IllegalArgumentException("The memoization policy must not be null");
+    }
+    this.memoizationPolicy = memoizationPolicy;
+  }
+
+  public MemoizationPolicy getMemoizationPolicy() {
+    return memoizationPolicy;
+  }
+
+  /**
+   * Sets the time after which the parsing of a file is given up, in milliseconds, 0 (the default) meaning no limit.
+   * The visitors are then given a tree of {@link com.sonar.csharp.squid.parser.UnparsedFile} nodes holding the tokens of the file.
+   */
+  public void setParseTimeout(long parseTimeout) {
+    if (parseTimeout < 0) {
+      throw new IllegalArgumentException("The parse timeout must be greater than or equal to 0, but was: " + parseTimeout);
+    }
+    this.parseTimeout = parseTimeout;
+  }
+
+  public long getParseTimeout() {
+    return parseTimeout;
+  }
+
+  /**
+   * Sets the number of tokens above which a file is not parsed, 0 (the default) meaning no limit. The memory used by the parser,
+   * and its memoized matches in particular, grows with the number of tokens.
+   * The visitors are then given a tree of {@link com.sonar.csharp.squid.parser.UnparsedFile} nodes holding the tokens of the file.
+   */
+  public void setParseTokenLimit(int parseTokenLimit) {
+    if (parseTokenLimit < 0) {
+      throw new IllegalArgumentException("The parse token limit must be greater than or equal to 0, but was: " + parseTokenLimit);
+    }
+    this.parseTokenLimit = parseTokenLimit;
+  }
+
+  public int getParseTokenLimit() {
+    return parseTokenLimit;
+  }
+
+  /**
+   * Sets the conditional compilation symbols defined before lexing each file, "DEBUG" and "TRACE" by default as in the Debug
+   * configuration of Visual Studio. Only the sections of the #if directives whose condition holds given these symbols, and the ones
+   * defined by the file itself, are parsed, so the code of the other sections is not measured.
+   */
+  public void setDefinedSymbols(Collection<String> definedSymbols) {
+    this.definedSymbols = ImmutableSet.copyOf(definedSymbols);
+  }
+
+  public Set<String> getDefinedSymbols() {
+    return definedSymbols;
+  }
+
 }
@@ -0,0 +1,57 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.collect.Lists;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.indexer.QueryByParent;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.util.List;
+
+/**
+ * Searches of source codes which do not need to go through the whole index.
+ */
+public final class CSharpSquidIndex {
+
+  private CSharpSquidIndex() {
+  }
+
+  /**
+   * Same result as a search with a {@link QueryByParent} and a {@link QueryByType}, but only the descendants of the parent are visited.
+   */
+  public static <S extends SourceCode> List<S> searchDescendants(SourceCode parent, Class<S> type) {
+    List<S> result = Lists.newArrayList();
+    addDescendants(parent, type, result);
+    return result;
+  }
+
+  private static <S extends SourceCode> void addDescendants(SourceCode parent, Class<S> type, List<S> result) {
+    if (parent.hasChildren()) {
+      for (SourceCode child : parent.getChildren()) {
+        if (child.isType(type)) {
+          result.add(type.cast(child));
+        }
+        addDescendants(child, type, result);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sonar.csharp.squid.profiling.ScanProfiler;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.AnalysisException;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeIndexer;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scanner which dispatches files over several workers, each of them having its own parser and its own copies of the visitors.
+ * Once all files are scanned, the source code trees of the workers are merged into the index of this scanner, so that the result
+ * is the same as the one of a sequential scan.
+ */
+public class ParallelAstScanner extends AstScanner<Grammar> {
+
+  private static final long HAND_OVER_POLL_MILLIS = 100;
+
+  private final SourceProject project;
+  private final ProgressReport progressReport;
+  private final ScanProfiler profiler;
+  private final List<Worker> workers = Lists.newArrayList();
+  private final Map<Object, Object> canonicalVisitors = Maps.newIdentityHashMap();
+  private final SourceFileListener sourceFileListener;
+  private final BlockingQueue<SourceFile> scannedFiles;
+
+  protected ParallelAstScanner(Builder builder) {
+    super(builder);
+    this.project = builder.context.getProject();
+    this.progressReport = builder.progressReport;
+    this.profiler = builder.profiler;
+    this.sourceFileListener = builder.sourceFileListener;
+    // Bounds the number of files scanned by the workers and not yet handed over to the listener
+    this.scannedFiles = new ArrayBlockingQueue<SourceFile>(builder.workers.size());
+
+    List<SquidAstVisitor<Grammar>> firstWorkerVisitors = builder.workers.get(0).visitors;
+    for (WorkerBuilder workerBuilder : builder.workers) {
+      Preconditions.checkState(workerBuilder.visitors.size() == firstWorkerVisitors.size(), "All workers must have the same visitors");
+      for (int i = 0; i < workerBuilder.visitors.size(); i++) {
+        // Check messages are logged by the profiled visitors themselves
+        Object visitor = ScanProfiler.unwrap(workerBuilder.visitors.get(i));
+        Object firstWorkerVisitor = ScanProfiler.unwrap(firstWorkerVisitors.get(i));
+        if (visitor != firstWorkerVisitor) {
+          canonicalVisitors.put(visitor, firstWorkerVisitor);
+        }
+      }
+      Worker worker = workerBuilder.build();
+      if (builder.sourceFileListener != null) {
+        worker.streamer = new SourceFileStreamer(worker.project, new CanonicalSourceFileListener());
+      }
+      workers.add(worker);
+    }
+  }
+
+  @Override
+  public void scanFiles(Collection<File> files) {
+    progressReport.start(files.size());
+    try {
+      scanInParallel(new FileQueue(ImmutableList.copyOf(files)));
+    } finally {
+      progressReport.stop();
+    }
+
+    for (Worker worker : workers) {
+      merge(worker.project);
+    }
+    decorateSquidTree();
+
+    if (profiler != null) {
+      profiler.report();
+    }
+  }
+
+  private void scanInParallel(final FileQueue files) {
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size(),
+      new ThreadFactoryBuilder().setNameFormat("C# analyzer worker %d").setDaemon(true).build());
+
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (final Worker worker : workers) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            worker.scanFiles(files);
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        while (!future.isDone()) {
+          handOver(scannedFiles.poll(HAND_OVER_POLL_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        future.get();
+      }
+      handOver(scannedFiles.poll());
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Interrupted while waiting for the C# analyzer workers", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Hands over the given file, and the ones which are already waiting, to the listener, from the thread which called {@link #scanFiles(Collection)}.
+   */
+  private void handOver(@Nullable SourceFile scannedFile) {
+    SourceFile sourceFile = scannedFile;
+    while (sourceFile != null) {
+      sourceFileListener.sourceFileScanned(sourceFile);
+      sourceFile = scannedFiles.poll();
+    }
+  }
+
+  private void merge(SourceProject workerProject) {
+    if (!workerProject.hasChildren()) {
+      return;
+    }
+
+    SourceCodeIndexer indexer = (SourceCodeIndexer) getIndex();
+    for (SourceCode sourceFile : workerProject.getChildren()) {
+      project.addChild(sourceFile);
+      reindex(indexer, sourceFile);
+    }
+  }
+
+  private void reindex(SourceCodeIndexer indexer, SourceCode sourceCode) {
+    indexer.index(sourceCode);
+    replaceCheckMessages(sourceCode);
+
+    if (sourceCode.hasChildren()) {
+      for (SourceCode child : sourceCode.getChildren()) {
+        reindex(indexer, child);
+      }
+    }
+  }
+
+  private void replaceAllCheckMessages(SourceCode sourceCode) {
+    replaceCheckMessages(sourceCode);
+
+    if (sourceCode.hasChildren()) {
+      for (SourceCode child : sourceCode.getChildren()) {
+        replaceAllCheckMessages(child);
+      }
+    }
+  }
+
+  /**
+   * Check messages logged by the copies of a visitor are attributed to the visitor of the first worker.
+   */
+  private void replaceCheckMessages(SourceCode sourceCode) {
+    if (!sourceCode.hasCheckMessages()) {
+      return;
+    }
+
+    List<CheckMessage> messages = Lists.newArrayList(sourceCode.getCheckMessages());
+    sourceCode.getCheckMessages().clear();
+    for (CheckMessage message : messages) {
+      Object canonicalVisitor = canonicalVisitors.get(message.getCheck());
+      sourceCode.log(canonicalVisitor == null ? message : copy(message, canonicalVisitor));
+    }
+  }
+
+  private static CheckMessage copy(CheckMessage message, Object check) {
+    CheckMessage result = new CheckMessage(check, message.getDefaultMessage(), message.getMessageArguments());
+    if (message.getLine() != null) {
+      result.setLine(message.getLine());
+    }
+    if (message.getCost() != null) {
+      result.setCost(message.getCost());
+    }
+    result.setBypassExclusion(message.isBypassExclusion());
+    return result;
+  }
+
+  /**
+   * Listener shared by the workers, which fixes the check messages of the files and queues them until they are handed over to the
+   * listener of this scanner. A worker waits while the queue is full.
+   */
+  private class CanonicalSourceFileListener implements SourceFileListener {
+
+    @Override
+    public void sourceFileScanned(SourceFile sourceFile) {
+      replaceAllCheckMessages(sourceFile);
+      try {
+        scannedFiles.put(sourceFile);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisException("Interrupted while handing over the scanned file " + sourceFile.getKey(), e);
+      }
+    }
+
+  }
+
+  /**
+   * Files shared by all the workers: each file is handed out to the first worker which asks for it.
+   */
+  private static class FileQueue extends AbstractCollection<File> {
+
+    private final List<File> files;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public FileQueue(List<File> files) {
+      this.files = files;
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+      return new AbstractIterator<File>() {
+
+        @Override
+        protected File computeNext() {
+          int index = next.getAndIncrement();
+          return index < files.size() ? files.get(index) : endOfData();
+        }
+
+      };
+    }
+
+    @Override
+    public int size() {
+      return files.size();
+    }
+
+  }
+
+  private static class Worker extends AstScanner<Grammar> {
+
+    private final SourceProject project;
+    private SourceFileStreamer streamer;
+
+    public Worker(WorkerBuilder builder) {
+      super(builder);
+      this.project = builder.context.getProject();
+    }
+
+    @Override
+    public void scanFiles(Collection<File> files) {
+      super.scanFiles(streamer == null ? files : streamer.stream(files));
+    }
+
+    @Override
+    protected void decorateSquidTree() {
+      // The source code tree is decorated once merged
+    }
+
+  }
+
+  public static class WorkerBuilder extends AstScanner.Builder<Grammar> {
+
+    private final SquidAstVisitorContextImpl<Grammar> context;
+    private final ProgressReport progressReport;
+    private final List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList();
+    private Parser<Grammar> parser;
+
+    private WorkerBuilder(SquidAstVisitorContextImpl<Grammar> context, ProgressReport progressReport) {
+      super(context);
+      this.context = context;
+      this.progressReport = progressReport;
+    }
+
+    @Override
+    public AstScanner.Builder<Grammar> setBaseParser(Parser<Grammar> baseParser) {
+      this.parser = baseParser;
+      return super.setBaseParser(baseParser);
+    }
+
+    @Override
+    public AstScanner.Builder<Grammar> withSquidAstVisitor(SquidAstVisitor<Grammar> visitor) {
+      visitors.add(visitor);
+      return super.withSquidAstVisitor(visitor);
+    }
+
+    @Override
+    public Worker build() {
+      super.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+
+        @Override
+        public void visitFile(@Nullable AstNode astNode) {
+          progressReport.nextFile(getContext().getFile());
+        }
+
+      });
+
+      return new Worker(this);
+    }
+
+  }
+
+  public static class Builder extends AstScanner.Builder<Grammar> {
+
+    private final ProgressReport progressReport = new ProgressReport("Report about progress of C# analyzer", TimeUnit.SECONDS.toMillis(10));
+    private final SquidAstVisitorContextImpl<Grammar> context;
+    private final List<WorkerBuilder> workers = Lists.newArrayList();
+    private ScanProfiler profiler;
+    private SourceFileListener sourceFileListener;
+
+    public Builder(SquidAstVisitorContextImpl<Grammar> context) {
+      super(context);
+      this.context = context;
+    }
+
+    /**
+     * Sets the profiler whose report is made at the end of the scan, null if the scan is not profiled.
+     */
+    public Builder setScanProfiler(@Nullable ScanProfiler profiler) {
+      this.profiler = profiler;
+      return this;
+    }
+
+    /**
+     * Sets the listener to which the files are handed over as soon as they are scanned, null to keep them in the index of the scanner.
+     */
+    public Builder setSourceFileListener(@Nullable SourceFileListener sourceFileListener) {
+      this.sourceFileListener = sourceFileListener;
+      return this;
+    }
+
+    /**
+     * Adds a worker to the scanner. Every worker must be given its own parser and the same visitors, registered in the same order.
+     */
+    public WorkerBuilder addWorker(SquidAstVisitorContextImpl<Grammar> workerContext) {
+      WorkerBuilder worker = new WorkerBuilder(workerContext, progressReport);
+      workers.add(worker);
+      return worker;
+    }
+
+    @Override
+    public AstScanner<Grammar> build() {
+      Preconditions.checkState(!workers.isEmpty(), "At least one worker must be added");
+      Preconditions.checkState(workers.get(0).parser != null, "baseParser must be set on every worker");
+
+      // Only used to give the grammar to the context, files are parsed by the workers
+      setBaseParser(workers.get(0).parser);
+
+      return new ParallelAstScanner(this);
+    }
+
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package com.sonar.csharp.squid;
 
+import com.sonar.csharp.squid.profiling.ScanProfiler;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.AstScanner;
@@ -34,25 +35,53 @@ import java.util.concurrent.TimeUnit;
 public class ProgressAstScanner extends AstScanner<Grammar> {
 
   private final ProgressReport progressReport;
+  private final ScanProfiler profiler;
+  private final SourceFileStreamer streamer;
 
   protected ProgressAstScanner(Builder builder) {
     super(builder);
     this.progressReport = builder.progressReport;
+    this.profiler = builder.profiler;
+    this.streamer = builder.sourceFileListener == null ? null : new SourceFileStreamer(builder.context.getProject(), builder.sourceFileListener);
   }
 
   @Override
   public void scanFiles(Collection<File> files) {
     progressReport.start(files.size());
-    super.scanFiles(files);
+    super.scanFiles(streamer == null ? files : streamer.stream(files));
     progressReport.stop();
+
+    if (profiler != null) {
+      profiler.report();
+    }
   }
 
   public static class Builder extends AstScanner.Builder<Grammar> {
 
     private final ProgressReport progressReport = new ProgressReport("Report about progress of C# analyzer", TimeUnit.SECONDS.toMillis(10));
+    private final SquidAstVisitorContextImpl<Grammar> context;
+    private ScanProfiler profiler;
+    private SourceFileListener sourceFileListener;
 
     public Builder(SquidAstVisitorContextImpl<Grammar> context) {
       super(context);
+      this.context = context;
+    }
+
+    /**
+     * Sets the profiler whose report is made at the end of the scan, null if the scan is not profiled.
+     */
+    public Builder setScanProfiler(@Nullable ScanProfiler profiler) {
+      this.profiler = profiler;
+      return this;
+    }
+
+    /**
+     * Sets the listener to which the files are handed over as soon as they are scanned, null to keep them in the index of the scanner.
+     */
+    public Builder setSourceFileListener(@Nullable SourceFileListener sourceFileListener) {
+      this.sourceFileListener = sourceFileListener;
+      return this;
     }
 
     @Override
@@ -0,0 +1,240 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Decoded contents of the file being scanned, which is read once by the parser and shared by the visitors implementing
+ * {@link SourceBufferAwareVisitor}. Lines are split as {@link Files#readLines(File, Charset)} does, on "\n", "\r" and "\r\n",
+ * and numbered from 1.
+ * <p>
+ * Files are read through a {@link FileChannel} into a byte buffer, and decoded into a char buffer, both being reused from one
+ * file to the next. Very large files are mapped into memory instead, so that the byte buffer does not keep their size: decoding
+ * from a mapped buffer is slower, and is thus not worth it for ordinary files. The contents are the same as the ones read through a {@link java.io.Reader}: malformed
+ * input is replaced, and a byte order mark which is not consumed by the decoder of the charset is kept as a U+FEFF character,
+ * to be skipped by the lexer like any other.
+ * </p>
+ */
+public class SourceBuffer {
+
+  private static final int MAPPED_FILE_SIZE = 1 << 24;
+
+  private final int mappedFileSize;
+
+  private final CharsetDecoder decoder;
+  private ByteBuffer bytes = ByteBuffer.allocate(1 << 14);
+  private CharBuffer chars = CharBuffer.allocate(1 << 14);
+  private File file;
+  private String contents = "";
+  private int[] lineStarts = new int[0];
+  private int lineCount;
+
+  public SourceBuffer(Charset charset) {
+    this(charset, MAPPED_FILE_SIZE);
+  }
+
+  SourceBuffer(Charset charset, int mappedFileSize) {
+    this.mappedFileSize = mappedFileSize;
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * Reads the given file, whose contents replace the ones of the previous file.
+   */
+  public String read(File file) throws IOException {
+    this.file = null;
+    this.contents = "";
+    this.lineCount = 0;
+
+    String result = decode(file);
+    indexLines(result);
+    this.contents = result;
+    this.file = file;
+    return result;
+  }
+
+  private String decode(File file) throws IOException {
+    FileInputStream input = new FileInputStream(file);
+    try {
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Too large file: " + file.getAbsolutePath());
+      }
+      ByteBuffer in = size >= mappedFileSize ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : readFully(channel, (int) size);
+      return decode(in);
+    } finally {
+      Closeables.closeQuietly(input);
+    }
+  }
+
+  private ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+    bytes.clear();
+    if (bytes.capacity() <= size) {
+      // One more byte, so that the end of the file is reached without growing the buffer
+      bytes = ByteBuffer.allocate(size + 1);
+    }
+    while (channel.read(bytes) != -1) {
+      if (!bytes.hasRemaining()) {
+        // The file has grown since its size was read
+        bytes = grow(bytes);
+      }
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  private String decode(ByteBuffer in) {
+    decoder.reset();
+    chars.clear();
+    int expectedLength = (int) (in.remaining() * (double) decoder.averageCharsPerByte()) + 1;
+    if (chars.capacity() < expectedLength) {
+      chars = CharBuffer.allocate(expectedLength);
+    }
+
+    CoderResult result = decoder.decode(in, chars, true);
+    while (result.isOverflow()) {
+      chars = grow(chars);
+      result = decoder.decode(in, chars, true);
+    }
+    result = decoder.flush(chars);
+    while (result.isOverflow()) {
+      chars = grow(chars);
+      result = decoder.flush(chars);
+    }
+
+    return new String(chars.array(), 0, chars.position());
+  }
+
+  private static ByteBuffer grow(ByteBuffer buffer) {
+    ByteBuffer result = ByteBuffer.allocate(buffer.capacity() * 2);
+    buffer.flip();
+    result.put(buffer);
+    return result;
+  }
+
+  private static CharBuffer grow(CharBuffer buffer) {
+    CharBuffer result = CharBuffer.allocate(buffer.capacity() * 2);
+    buffer.flip();
+    result.put(buffer);
+    return result;
+  }
+
+  private void indexLines(String s) {
+    int count = 0;
+    int start = 0;
+    int length = s.length();
+    while (start < length) {
+      lineStarts = ensureCapacity(lineStarts, count + 1);
+      lineStarts[count++] = start;
+
+      int end = lineEnd(s, start);
+      if (end == length) {
+        start = length;
+      } else {
+        start = end + (s.charAt(end) == '\r' && end + 1 < length && s.charAt(end + 1) == '\n' ? 2 : 1);
+      }
+    }
+    lineStarts = ensureCapacity(lineStarts, count + 1);
+    lineStarts[count] = length;
+    lineCount = count;
+  }
+
+  private static int[] ensureCapacity(int[] array, int capacity) {
+    return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+  }
+
+  private static int lineEnd(String s, int start) {
+    int i = start;
+    while (i < s.length() && s.charAt(i) != '\n' && s.charAt(i) != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @return the file whose contents are in this buffer, or null if the last file could not be read
+   */
+  public File getFile() {
+    return file;
+  }
+
+  public String getContents() {
+    return contents;
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @return the offset of the first character of the given line
+   */
+  public int getLineStart(int line) {
+    checkLine(line);
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * @return the offset following the last character of the given line, line terminator excluded
+   */
+  public int getLineEnd(int line) {
+    checkLine(line);
+    return lineEnd(contents, lineStarts[line - 1]);
+  }
+
+  public int getLineLength(int line) {
+    return getLineEnd(line) - getLineStart(line);
+  }
+
+  /**
+   * @return the line containing the character at the given offset
+   */
+  public int getLine(int offset) {
+    if (offset < 0 || offset >= contents.length()) {
+      throw new IndexOutOfBoundsException("Offset " + offset + " is out of the contents of " + file);
+    }
+    int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+
+  private void checkLine(int line) {
+    if (line < 1 || line > lineCount) {
+      throw new IndexOutOfBoundsException("Line " + line + " is out of the " + lineCount + " lines of " + file);
+    }
+  }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import org.sonar.squidbridge.api.SourceFile;
+
+/**
+ * Receives each file as soon as all the visitors have left it. A scanner given a listener does not keep the scanned files:
+ * they are neither indexed nor attached to the project, so that the memory used by a scan does not grow with the number of files.
+ * The files are passed one at a time, from the thread which scans the files, even by a {@link ParallelAstScanner}: the listener
+ * can then save the results of each file without being thread-safe.
+ */
+public interface SourceFileListener {
+
+  void sourceFileScanned(SourceFile sourceFile);
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeIndexer;
+import org.sonar.squidbridge.api.SourceCodeTreeDecorator;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.measures.MetricDef;
+
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hands the files of a scanner over to a {@link SourceFileListener}, once their measures are aggregated, and then detaches them from
+ * the project.
+ * A file is complete once the scanner asks for the next one, so the files to scan are wrapped to detect it.
+ */
+class SourceFileStreamer implements SourceCodeIndexer {
+
+  private final SourceProject project;
+  private final SourceFileListener listener;
+
+  public SourceFileStreamer(SourceProject project, SourceFileListener listener) {
+    this.project = project;
+    this.listener = listener;
+    project.setSourceCodeIndexer(this);
+  }
+
+  /**
+   * Replaces the index of the scanner for everything below the project, which is then only reachable from the files given to the listener.
+   */
+  @Override
+  public void index(SourceCode sourceCode) {
+    sourceCode.setSourceCodeIndexer(this);
+  }
+
+  public Collection<File> stream(final Collection<File> files) {
+    return new AbstractCollection<File>() {
+
+      @Override
+      public Iterator<File> iterator() {
+        final Iterator<File> iterator = files.iterator();
+        return new Iterator<File>() {
+
+          @Override
+          public boolean hasNext() {
+            flush();
+            return iterator.hasNext();
+          }
+
+          @Override
+          public File next() {
+            flush();
+            return iterator.next();
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+
+        };
+      }
+
+      @Override
+      public int size() {
+        return files.size();
+      }
+
+    };
+  }
+
+  private void flush() {
+    if (!project.hasChildren()) {
+      return;
+    }
+
+    List<SourceCode> sourceFiles = ImmutableList.copyOf(project.getChildren());
+    project.getChildren().clear();
+    for (SourceCode sourceFile : sourceFiles) {
+      decorate(sourceFile);
+      listener.sourceFileScanned((SourceFile) sourceFile);
+    }
+  }
+
+  /**
+   * Aggregates the measures of the given source code as {@link SourceCodeTreeDecorator} does, which is only run on the project once all
+   * the files are scanned.
+   */
+  private static void decorate(SourceCode sourceCode) {
+    if (!sourceCode.hasChildren()) {
+      return;
+    }
+
+    for (SourceCode child : sourceCode.getChildren()) {
+      decorate(child);
+    }
+    for (MetricDef metric : CSharpMetric.values()) {
+      if ((metric.aggregateIfThereIsAlreadyAValue() || sourceCode.getDouble(metric) == 0) && !metric.isCalculatedMetric()
+        && metric.isThereAggregationFormula()) {
+        for (SourceCode child : sourceCode.getChildren()) {
+          sourceCode.add(metric, child);
+        }
+      }
+    }
+  }
+
+}
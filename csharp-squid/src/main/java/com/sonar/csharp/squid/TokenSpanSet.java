@@ -0,0 +1,182 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.sonar.sslr.api.AstNode;
+
+import java.util.Arrays;
+
+/**
+ * Set of texts, which can be looked up by the text of the tokens of a node, as defined by {@link TokenSpans}, or by any characters,
+ * without building a string. A text is only built when a node whose text is not already in the set is added to it.
+ */
+public final class TokenSpanSet {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] texts = new String[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Adds the text of the tokens of the given node.
+   *
+   * @return true if the text was not already in this set
+   */
+  public boolean add(AstNode node) {
+    int hash = TokenSpans.hashCode(node);
+    int index = indexOf(node, hash);
+    if (index >= 0) {
+      return false;
+    }
+    insert(-index - 1, TokenSpans.toString(node), hash);
+    return true;
+  }
+
+  /**
+   * @return true if the text was not already in this set
+   */
+  public boolean add(String text) {
+    int hash = text.hashCode();
+    int index = indexOf(text, hash);
+    if (index >= 0) {
+      return false;
+    }
+    insert(-index - 1, text, hash);
+    return true;
+  }
+
+  /**
+   * @return true if this set contains the text of the tokens of the given node
+   */
+  public boolean contains(AstNode node) {
+    return indexOf(node, TokenSpans.hashCode(node)) >= 0;
+  }
+
+  public boolean contains(CharSequence text) {
+    return indexOf(text, TokenSpans.hashCode(text)) >= 0;
+  }
+
+  /**
+   * @return true if the text was in this set
+   */
+  public boolean remove(CharSequence text) {
+    int index = indexOf(text, TokenSpans.hashCode(text));
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(texts, null);
+    size = 0;
+  }
+
+  /**
+   * Linear probing, from the slot of the given hash code.
+   *
+   * @return the index of the text, or (-(insertion index) - 1) if it is not in this set
+   */
+  private int indexOf(Object text, int hash) {
+    int mask = texts.length - 1;
+    int i = slot(hash, mask);
+    while (texts[i] != null) {
+      if (hashes[i] == hash && contentEquals(texts[i], text)) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    return -i - 1;
+  }
+
+  private static boolean contentEquals(String text, Object other) {
+    return other instanceof AstNode ? TokenSpans.contentEquals((AstNode) other, text) : text.contentEquals((CharSequence) other);
+  }
+
+  private static int slot(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private void insert(int index, String text, int hash) {
+    if (2 * (size + 1) > texts.length) {
+      grow();
+      int i = indexOf(text, hash);
+      texts[-i - 1] = text;
+      hashes[-i - 1] = hash;
+    } else {
+      texts[index] = text;
+      hashes[index] = hash;
+    }
+    size++;
+  }
+
+  private void grow() {
+    String[] oldTexts = texts;
+    int[] oldHashes = hashes;
+    texts = new String[oldTexts.length * 2];
+    hashes = new int[oldTexts.length * 2];
+    int mask = texts.length - 1;
+    for (int i = 0; i < oldTexts.length; i++) {
+      if (oldTexts[i] != null) {
+        int j = slot(oldHashes[i], mask);
+        while (texts[j] != null) {
+          j = (j + 1) & mask;
+        }
+        texts[j] = oldTexts[i];
+        hashes[j] = oldHashes[i];
+      }
+    }
+  }
+
+  /**
+   * Shifts back the following texts of the same cluster which can take the freed slot, so that no lookup stops before reaching them.
+   */
+  private void removeAt(int index) {
+    int mask = texts.length - 1;
+    int free = index;
+    int i = index;
+    while (true) {
+      i = (i + 1) & mask;
+      if (texts[i] == null) {
+        break;
+      }
+      int slot = slot(hashes[i], mask);
+      boolean stays = free <= i ? free < slot && slot <= i : free < slot || slot <= i;
+      if (!stays) {
+        texts[free] = texts[i];
+        hashes[free] = hashes[i];
+        free = i;
+      }
+    }
+    texts[free] = null;
+    size--;
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+
+import java.util.List;
+
+/**
+ * Text of the tokens of a node, that is the concatenation of their original values, as returned by {@link #toString(AstNode)}, which is
+ * hashed and compared by the other methods without being built, nor the tokens of the node being listed.
+ */
+public final class TokenSpans {
+
+  private static final int NO_MATCH = -1;
+
+  private TokenSpans() {
+  }
+
+  /**
+   * @return the hash code of the text of the tokens of the given node, which is the one of {@link String#hashCode()}
+   */
+  public static int hashCode(AstNode node) {
+    return hashCode(node, 0);
+  }
+
+  private static int hashCode(AstNode node, int hash) {
+    List<AstNode> children = node.getChildren();
+    if (children.isEmpty()) {
+      return node.getToken() == null ? hash : hashCode(node.getToken().getOriginalValue(), hash);
+    }
+
+    int result = hash;
+    for (int i = 0; i < children.size(); i++) {
+      result = hashCode(children.get(i), result);
+    }
+    return result;
+  }
+
+  /**
+   * @return the hash code of the given characters, which is the one of {@link String#hashCode()}
+   */
+  public static int hashCode(CharSequence text) {
+    return hashCode(text, 0);
+  }
+
+  private static int hashCode(CharSequence text, int hash) {
+    int result = hash;
+    for (int i = 0; i < text.length(); i++) {
+      result = 31 * result + text.charAt(i);
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the text of the tokens of the given node is equal to the given characters
+   */
+  public static boolean contentEquals(AstNode node, CharSequence text) {
+    return match(node, text, 0) == text.length();
+  }
+
+  /**
+   * @return the offset following the text of the tokens of the node, if it appears in the given characters at the given offset,
+   * or {@link #NO_MATCH}
+   */
+  private static int match(AstNode node, CharSequence text, int offset) {
+    List<AstNode> children = node.getChildren();
+    if (children.isEmpty()) {
+      return node.getToken() == null ? offset : match(node.getToken(), text, offset);
+    }
+
+    int result = offset;
+    for (int i = 0; i < children.size() && result != NO_MATCH; i++) {
+      result = match(children.get(i), text, result);
+    }
+    return result;
+  }
+
+  private static int match(Token token, CharSequence text, int offset) {
+    String value = token.getOriginalValue();
+    if (offset + value.length() > text.length()) {
+      return NO_MATCH;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != text.charAt(offset + i)) {
+        return NO_MATCH;
+      }
+    }
+    return offset + value.length();
+  }
+
+  /**
+   * @return the concatenation of the original values of the tokens of the given node
+   */
+  public static String toString(AstNode node) {
+    StringBuilder sb = new StringBuilder();
+    append(node, sb);
+    return sb.toString();
+  }
+
+  private static void append(AstNode node, StringBuilder sb) {
+    List<AstNode> children = node.getChildren();
+    if (children.isEmpty()) {
+      if (node.getToken() != null) {
+        sb.append(node.getToken().getOriginalValue());
+      }
+    } else {
+      for (int i = 0; i < children.size(); i++) {
+        append(children.get(i), sb);
+      }
+    }
+  }
+
+}
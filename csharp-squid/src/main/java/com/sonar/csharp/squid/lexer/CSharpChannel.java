@@ -0,0 +1,496 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BomCharacterChannel;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Hand-written state machine which produces exactly the same tokens and comments as the regular expression channels of
+ * {@link CSharpLexer}, and consumes any character. The next token is selected from its first character, ASCII characters
+ * are classified with lookup tables, and keywords are recognized with {@link CSharpKeywordTable}.
+ * <p>
+ * The values of keywords and punctuators are the constant ones of their types, and the values of identifiers are shared through
+ * an {@link IdentifierTable}.
+ * </p>
+ */
+public class CSharpChannel extends Channel<Lexer> {
+
+  private static final int EOF = -1;
+
+  private static final boolean[] ASCII_IDENTIFIER_START = new boolean[128];
+  private static final boolean[] ASCII_IDENTIFIER_PART = new boolean[128];
+  private static final CSharpPunctuator[][] PUNCTUATORS = new CSharpPunctuator[128][];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      ASCII_IDENTIFIER_START[c] = true;
+      ASCII_IDENTIFIER_START[Character.toUpperCase(c)] = true;
+    }
+    ASCII_IDENTIFIER_START['_'] = true;
+    System.arraycopy(ASCII_IDENTIFIER_START, 0, ASCII_IDENTIFIER_PART, 0, 128);
+    for (char c = '0'; c <= '9'; c++) {
+      ASCII_IDENTIFIER_PART[c] = true;
+    }
+
+    // Longest punctuators first, as PunctuatorChannel
+    CSharpPunctuator[] punctuators = CSharpPunctuator.values();
+    Arrays.sort(punctuators, new Comparator<CSharpPunctuator>() {
+      @Override
+      public int compare(CSharpPunctuator p1, CSharpPunctuator p2) {
+        return p2.getValue().length() - p1.getValue().length();
+      }
+    });
+    for (CSharpPunctuator punctuator : punctuators) {
+      char first = punctuator.getValue().charAt(0);
+      CSharpPunctuator[] candidates = PUNCTUATORS[first];
+      if (candidates == null) {
+        PUNCTUATORS[first] = new CSharpPunctuator[] {punctuator};
+      } else {
+        candidates = Arrays.copyOf(candidates, candidates.length + 1);
+        candidates[candidates.length - 1] = punctuator;
+        PUNCTUATORS[first] = candidates;
+      }
+    }
+  }
+
+  private final StringBuilder tmpBuilder = new StringBuilder();
+  private final Token.Builder tokenBuilder = Token.builder();
+  private final IdentifierTable identifiers = new IdentifierTable();
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    int c = code.peek();
+    if (c == EOF) {
+      return false;
+    }
+
+    switch (c) {
+      case '/':
+        if (comment(code, lexer)) {
+          return true;
+        }
+        break;
+      case '"':
+        if (regularString(code, lexer)) {
+          return true;
+        }
+        break;
+      case '@':
+        if (verbatimString(code, lexer)) {
+          return true;
+        }
+        break;
+      case '\'':
+        if (character(code, lexer)) {
+          return true;
+        }
+        break;
+      case '#':
+        addToken(code, lexer, CSharpTokenType.PREPROCESSOR, lineEnd(code, 1));
+        return true;
+      default:
+        break;
+    }
+
+    if ((c == '.' || isDigit(c)) && number(code, lexer)) {
+      return true;
+    }
+    if (identifierOrKeyword(code, lexer) || punctuator(code, lexer, c)) {
+      return true;
+    }
+
+    if (isWhitespace(c) || c == BomCharacterChannel.BOM_CHAR) {
+      code.pop();
+    } else {
+      unknownCharacter(code, lexer);
+    }
+    return true;
+  }
+
+  private boolean comment(CodeReader code, Lexer lexer) {
+    int length;
+    if (charAt(code, 1) == '/') {
+      length = lineEnd(code, 2);
+    } else if (charAt(code, 1) == '*') {
+      length = blockCommentEnd(code);
+      if (length == 0) {
+        return false;
+      }
+    } else {
+      return false;
+    }
+
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    Token token = tokenBuilder
+        .setType(GenericTokenType.COMMENT)
+        .setValueAndOriginalValue(pop(code, length))
+        .setURI(lexer.getURI())
+        .setLine(line)
+        .setColumn(column)
+        .build();
+    lexer.addTrivia(Trivia.createComment(token));
+    return true;
+  }
+
+  private static int lineEnd(CodeReader code, int start) {
+    int i = start;
+    int c = charAt(code, i);
+    while (c != EOF && c != '\n' && c != '\r') {
+      i++;
+      c = charAt(code, i);
+    }
+    return i;
+  }
+
+  /**
+   * @return the length of the block comment, or 0 if it is not closed
+   */
+  private static int blockCommentEnd(CodeReader code) {
+    int length = code.length();
+    for (int i = 2; i < length - 1; i++) {
+      if (code.charAt(i) == '*' && code.charAt(i + 1) == '/') {
+        return i + 2;
+      }
+    }
+    return 0;
+  }
+
+  private boolean regularString(CodeReader code, Lexer lexer) {
+    int end = quotedEnd(code, 1, '"');
+    if (end == 0) {
+      return false;
+    }
+    addToken(code, lexer, CSharpTokenType.STRING_LITERAL, end);
+    return true;
+  }
+
+  private boolean character(CodeReader code, Lexer lexer) {
+    int end = quotedEnd(code, 1, '\'');
+    if (end <= 2) {
+      return false;
+    }
+    addToken(code, lexer, CSharpTokenType.CHARACTER_LITERAL, end);
+    return true;
+  }
+
+  /**
+   * Escape sequences are a backslash followed by any character but a line terminator, other characters cannot be a line feed
+   * or a carriage return.
+   *
+   * @return the length of the literal, closing quote included, or 0 if the literal is not closed
+   */
+  private static int quotedEnd(CodeReader code, int start, char quote) {
+    int i = start;
+    while (true) {
+      int c = charAt(code, i);
+      if (c == '\\' && !isLineTerminator(charAt(code, i + 1))) {
+        i += 2;
+      } else if (c != EOF && c != quote && c != '\n' && c != '\r') {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return charAt(code, i) == quote ? i + 1 : 0;
+  }
+
+  private boolean verbatimString(CodeReader code, Lexer lexer) {
+    if (charAt(code, 1) != '"') {
+      return false;
+    }
+
+    int i = 2;
+    while (true) {
+      int c = charAt(code, i);
+      if (c == '"' && charAt(code, i + 1) == '"') {
+        i += 2;
+      } else if (c != EOF && c != '"') {
+        i++;
+      } else {
+        break;
+      }
+    }
+    if (charAt(code, i) != '"') {
+      return false;
+    }
+
+    addToken(code, lexer, CSharpTokenType.STRING_LITERAL, i + 1);
+    return true;
+  }
+
+  private boolean number(CodeReader code, Lexer lexer) {
+    int integerEnd = digitsEnd(code, 0);
+
+    // Real with a decimal point
+    if (charAt(code, integerEnd) == '.') {
+      int fractionEnd = digitsEnd(code, integerEnd + 1);
+      if (fractionEnd > integerEnd + 1) {
+        addToken(code, lexer, CSharpTokenType.REAL_LITERAL, realSuffixEnd(code, exponentEnd(code, fractionEnd)));
+        return true;
+      }
+    }
+    if (integerEnd == 0) {
+      return false;
+    }
+
+    // Real with an exponent or a suffix
+    int exponentEnd = exponentEnd(code, integerEnd);
+    if (exponentEnd > integerEnd) {
+      addToken(code, lexer, CSharpTokenType.REAL_LITERAL, realSuffixEnd(code, exponentEnd));
+      return true;
+    }
+    if (isRealSuffix(charAt(code, integerEnd))) {
+      addToken(code, lexer, CSharpTokenType.REAL_LITERAL, integerEnd + 1);
+      return true;
+    }
+
+    // Hexadecimal integer
+    if (integerEnd == 1 && code.charAt(0) == '0' && (charAt(code, 1) == 'x' || charAt(code, 1) == 'X')) {
+      int hexEnd = 2;
+      while (isHexDigit(charAt(code, hexEnd))) {
+        hexEnd++;
+      }
+      if (hexEnd > 2) {
+        addToken(code, lexer, CSharpTokenType.INTEGER_HEX_LITERAL, integerSuffixEnd(code, hexEnd));
+        return true;
+      }
+    }
+
+    addToken(code, lexer, CSharpTokenType.INTEGER_DEC_LITERAL, integerSuffixEnd(code, integerEnd));
+    return true;
+  }
+
+  private static int digitsEnd(CodeReader code, int start) {
+    int i = start;
+    while (isDigit(charAt(code, i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int exponentEnd(CodeReader code, int start) {
+    int c = charAt(code, start);
+    if (c != 'e' && c != 'E') {
+      return start;
+    }
+    int digitsStart = start + 1;
+    c = charAt(code, digitsStart);
+    if (c == '+' || c == '-') {
+      digitsStart++;
+    }
+    int end = digitsEnd(code, digitsStart);
+    return end > digitsStart ? end : start;
+  }
+
+  private static int realSuffixEnd(CodeReader code, int start) {
+    return isRealSuffix(charAt(code, start)) ? start + 1 : start;
+  }
+
+  private static int integerSuffixEnd(CodeReader code, int start) {
+    int c = charAt(code, start);
+    if (c == 'U' || c == 'u') {
+      c = charAt(code, start + 1);
+      return c == 'L' || c == 'l' ? start + 2 : start + 1;
+    } else if (c == 'L' || c == 'l') {
+      c = charAt(code, start + 1);
+      return c == 'U' || c == 'u' ? start + 2 : start + 1;
+    }
+    return start;
+  }
+
+  private boolean identifierOrKeyword(CodeReader code, Lexer lexer) {
+    boolean verbatim = code.charAt(0) == '@';
+    int i = verbatim ? 1 : 0;
+
+    int width = identifierCharacterWidth(code, i, true);
+    if (width == 0) {
+      return false;
+    }
+    boolean ascii = width == 1 && code.charAt(i) < 128;
+    i += width;
+
+    width = identifierCharacterWidth(code, i, false);
+    while (width != 0) {
+      ascii &= width == 1 && code.charAt(i) < 128;
+      i += width;
+      width = identifierCharacterWidth(code, i, false);
+    }
+
+    CSharpKeyword keyword = verbatim || !ascii ? null : CSharpKeywordTable.get(code, i);
+    if (keyword == null) {
+      addToken(code, lexer, GenericTokenType.IDENTIFIER, identifiers.get(code, i));
+    } else {
+      addToken(code, lexer, keyword, keyword.getValue());
+    }
+    return true;
+  }
+
+  /**
+   * Identifiers start with a letter or an underscore, followed by letters, decimal digits, connecting, combining or formatting
+   * characters.
+   *
+   * @return the number of chars of the identifier character at the given index (2 for a surrogate pair), or 0 if there is none
+   */
+  private static int identifierCharacterWidth(CodeReader code, int index, boolean start) {
+    int c = charAt(code, index);
+    if (c == EOF) {
+      return 0;
+    }
+    if (c < 128) {
+      return (start ? ASCII_IDENTIFIER_START[c] : ASCII_IDENTIFIER_PART[c]) ? 1 : 0;
+    }
+
+    int codePoint = c;
+    int width = 1;
+    int next = charAt(code, index + 1);
+    if (Character.isHighSurrogate((char) c) && next != EOF && Character.isLowSurrogate((char) next)) {
+      codePoint = Character.toCodePoint((char) c, (char) next);
+      width = 2;
+    }
+
+    switch (Character.getType(codePoint)) {
+      case Character.UPPERCASE_LETTER:
+      case Character.LOWERCASE_LETTER:
+      case Character.TITLECASE_LETTER:
+      case Character.MODIFIER_LETTER:
+      case Character.OTHER_LETTER:
+      case Character.LETTER_NUMBER:
+        return width;
+      case Character.DECIMAL_DIGIT_NUMBER:
+      case Character.CONNECTOR_PUNCTUATION:
+      case Character.NON_SPACING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+      case Character.FORMAT:
+        return start ? 0 : width;
+      default:
+        return 0;
+    }
+  }
+
+  private boolean punctuator(CodeReader code, Lexer lexer, int c) {
+    if (c >= 128 || PUNCTUATORS[c] == null) {
+      return false;
+    }
+
+    for (CSharpPunctuator punctuator : PUNCTUATORS[c]) {
+      String value = punctuator.getValue();
+      int i = 1;
+      while (i < value.length() && charAt(code, i) == value.charAt(i)) {
+        i++;
+      }
+      if (i == value.length()) {
+        addToken(code, lexer, punctuator, value);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void unknownCharacter(CodeReader code, Lexer lexer) {
+    char c = (char) code.pop();
+    Token token = tokenBuilder
+        .setType(GenericTokenType.UNKNOWN_CHAR)
+        .setValueAndOriginalValue(String.valueOf(c))
+        .setURI(lexer.getURI())
+        .setLine(code.getLinePosition())
+        .setColumn(code.getColumnPosition() - 1)
+        .build();
+    lexer.addToken(token);
+  }
+
+  private void addToken(CodeReader code, Lexer lexer, TokenType type, int length) {
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    addToken(lexer, type, pop(code, length), line, column);
+  }
+
+  /**
+   * Adds a token whose value is known, which avoids building it from the characters of the code reader.
+   */
+  private void addToken(CodeReader code, Lexer lexer, TokenType type, String value) {
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    for (int i = 0; i < value.length(); i++) {
+      code.pop();
+    }
+    addToken(lexer, type, value, line, column);
+  }
+
+  private void addToken(Lexer lexer, TokenType type, String value, int line, int column) {
+    Token token = tokenBuilder
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(lexer.getURI())
+        .setLine(line)
+        .setColumn(column)
+        .build();
+    lexer.addToken(token);
+  }
+
+  private String pop(CodeReader code, int length) {
+    tmpBuilder.setLength(0);
+    for (int i = 0; i < length; i++) {
+      tmpBuilder.append((char) code.pop());
+    }
+    return tmpBuilder.toString();
+  }
+
+  private static int charAt(CodeReader code, int index) {
+    return index < code.length() ? code.charAt(index) : EOF;
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isHexDigit(int c) {
+    return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  private static boolean isRealSuffix(int c) {
+    return c == 'F' || c == 'f' || c == 'D' || c == 'd' || c == 'M' || c == 'm';
+  }
+
+  /**
+   * Characters not matched by the "." of regular expressions.
+   */
+  private static boolean isLineTerminator(int c) {
+    return c == EOF || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Perfect hash table of the C# keywords, which allows to recognize a keyword directly from the characters of the code reader.
+ * <p>
+ * The hash of a word is computed from its length and its first, second and last characters, which are different for every keyword.
+ * The multiplier was chosen so that no two keywords share the same slot, which is verified when the table is built.
+ * </p>
+ */
+final class CSharpKeywordTable {
+
+  static final int MIN_LENGTH = 2;
+  static final int MAX_LENGTH = 10;
+
+  private static final int BITS = 9;
+  private static final int MULTIPLIER = 556583;
+
+  private static final CSharpKeyword[] TABLE = new CSharpKeyword[1 << BITS];
+
+  static {
+    for (CSharpKeyword keyword : CSharpKeyword.values()) {
+      String value = keyword.getValue();
+      if (value.length() < MIN_LENGTH || value.length() > MAX_LENGTH) {
+        throw new IllegalStateException("Unexpected length of keyword: " + value);
+      }
+      int slot = slot(value.length(), value.charAt(0), value.charAt(1), value.charAt(value.length() - 1));
+      if (TABLE[slot] != null) {
+        throw new IllegalStateException("The keywords " + TABLE[slot].getValue() + " and " + value + " have the same hash");
+      }
+      TABLE[slot] = keyword;
+    }
+  }
+
+  private CSharpKeywordTable() {
+  }
+
+  /**
+   * @param length length of the word starting at the current position of the code reader, whose characters must all be ASCII ones
+   * @return the keyword, or null if the word is not a keyword
+   */
+  static CSharpKeyword get(CodeReader code, int length) {
+    if (length < MIN_LENGTH || length > MAX_LENGTH) {
+      return null;
+    }
+
+    CSharpKeyword keyword = TABLE[slot(length, code.charAt(0), code.charAt(1), code.charAt(length - 1))];
+    if (keyword == null) {
+      return null;
+    }
+
+    String value = keyword.getValue();
+    if (value.length() != length) {
+      return null;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != code.charAt(i)) {
+        return null;
+      }
+    }
+    return keyword;
+  }
+
+  private static int slot(int length, char first, char second, char last) {
+    int key = (((length << 7 | first) << 7 | second) << 7) | last;
+    return (key * MULTIPLIER) >>> (32 - BITS);
+  }
+
+}
@@ -23,7 +23,7 @@ import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
 import com.sonar.csharp.squid.api.CSharpTokenType;
-import com.sonar.csharp.squid.lexer.preprocessors.StandardPreprocessorLinePreprocessor;
+import com.sonar.csharp.squid.lexer.preprocessors.ConditionalCompilationPreprocessor;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.channel.BlackHoleChannel;
@@ -69,9 +69,27 @@ public final class CSharpLexer {
   public static Lexer create(CSharpConfiguration conf, Preprocessor... preprocessors) {
     Lexer.Builder builder = Lexer.builder()
         .withCharset(conf.getCharset())
+        .withFailIfNoChannelToConsumeOneCharacter(true);
 
-        .withFailIfNoChannelToConsumeOneCharacter(true)
+    if (conf.getStateMachineLexer()) {
+      builder.withChannel(new CSharpChannel());
+    } else {
+      addRegexpChannels(builder);
+    }
 
+    if (preprocessors.length > 0) {
+      for (Preprocessor preprocessor : preprocessors) {
+        builder.withPreprocessor(preprocessor);
+      }
+    } else {
+      builder.withPreprocessor(new ConditionalCompilationPreprocessor(conf.getDefinedSymbols()));
+    }
+
+    return builder.build();
+  }
+
+  private static void addRegexpChannels(Lexer.Builder builder) {
+    builder
         // Comments
         .withChannel(commentRegexp("//", o2n("[^\\n\\r]")))
         .withChannel(commentRegexp("/\\*", ANY_CHAR + "*?", "\\*/"))
@@ -97,16 +115,6 @@ public final class CSharpLexer {
         .withChannel(new BlackHoleChannel("[\\s]"))
         .withChannel(new BomCharacterChannel())
         .withChannel(new UnknownCharacterChannel());
-
-    if (preprocessors.length > 0) {
-      for (Preprocessor preprocessor : preprocessors) {
-        builder.withPreprocessor(preprocessor);
-      }
-    } else {
-      builder.withPreprocessor(new StandardPreprocessorLinePreprocessor());
-    }
-
-    return builder.build();
   }
 
 }
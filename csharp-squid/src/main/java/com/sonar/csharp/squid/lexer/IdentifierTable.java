@@ -0,0 +1,114 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Table of the identifiers read by a lexer, so that all the tokens of an identifier share the same string. The string is only built
+ * the first time the identifier is read, and its hash code, used by the checks which gather identifiers, is only computed once.
+ * <p>
+ * The table lives as long as its lexer, usually for a scan, and is bounded: once it is full, the identifiers which are not in it
+ * are no longer shared.
+ * </p>
+ */
+final class IdentifierTable {
+
+  static final int MAX_SIZE = 1 << 15;
+
+  private String[] strings = new String[1 << 10];
+  private int size;
+  private final StringBuilder tmpBuilder = new StringBuilder();
+
+  /**
+   * @return the string made of the given number of characters from the current position of the code reader, which is not moved
+   */
+  public String get(CodeReader code, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + code.charAt(i);
+    }
+
+    int mask = strings.length - 1;
+    int index = spread(hash) & mask;
+    String string = strings[index];
+    while (string != null) {
+      if (string.hashCode() == hash && matches(string, code, length)) {
+        return string;
+      }
+      index = (index + 1) & mask;
+      string = strings[index];
+    }
+
+    String result = read(code, length);
+    if (size < MAX_SIZE) {
+      strings[index] = result;
+      size++;
+      if (size * 2 > strings.length) {
+        rehash();
+      }
+    }
+    return result;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean matches(String string, CodeReader code, int length) {
+    if (string.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (string.charAt(i) != code.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String read(CodeReader code, int length) {
+    tmpBuilder.setLength(0);
+    for (int i = 0; i < length; i++) {
+      tmpBuilder.append(code.charAt(i));
+    }
+    return tmpBuilder.toString();
+  }
+
+  private void rehash() {
+    String[] oldStrings = strings;
+    strings = new String[oldStrings.length * 2];
+    int mask = strings.length - 1;
+    for (String string : oldStrings) {
+      if (string != null) {
+        int index = spread(string.hashCode()) & mask;
+        while (strings[index] != null) {
+          index = (index + 1) & mask;
+        }
+        strings[index] = string;
+      }
+    }
+  }
+
+}
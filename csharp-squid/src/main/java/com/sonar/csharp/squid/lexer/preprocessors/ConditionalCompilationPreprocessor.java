@@ -0,0 +1,269 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates the conditional compilation directives (#define, #undef, #if, #elif, #else and #endif) against the given symbols, and
+ * turns the tokens of the sections which are not compiled into skipped text, so that they are not parsed. As with
+ * {@link StandardPreprocessorLinePreprocessor}, every directive becomes skipped text.
+ * <p>
+ * Unbalanced directives are tolerated: an #elif, #else or #endif without #if is ignored, and the sections still open at the end of the
+ * file are closed by it. A condition which cannot be evaluated is false.
+ * </p>
+ */
+public class ConditionalCompilationPreprocessor extends Preprocessor {
+
+  private final Set<String> definedSymbols;
+  private final Set<String> symbols = Sets.newHashSet();
+  /**
+   * For each open #if, whether one of its sections has been compiled.
+   */
+  private final List<Boolean> sections = Lists.newArrayList();
+
+  public ConditionalCompilationPreprocessor(Collection<String> definedSymbols) {
+    this.definedSymbols = ImmutableSet.copyOf(definedSymbols);
+  }
+
+  @Override
+  public void init() {
+    symbols.clear();
+    symbols.addAll(definedSymbols);
+    sections.clear();
+  }
+
+  @Override
+  public PreprocessorAction process(List<Token> tokens) {
+    Token token = tokens.get(0);
+    if (token.getType() != CSharpTokenType.PREPROCESSOR) {
+      return PreprocessorAction.NO_OPERATION;
+    }
+
+    // The tokens of the sections which are not compiled are consumed along with the directive starting them
+    int end = evaluate(token.getValue()) ? 1 : endOfSection(tokens);
+    List<Trivia> trivia = new ArrayList<Trivia>(end);
+    for (int i = 0; i < end; i++) {
+      trivia.add(Trivia.createSkippedText(tokens.get(i)));
+    }
+    return new PreprocessorAction(end, trivia, new ArrayList<Token>());
+  }
+
+  /**
+   * @return whether the code following the given directive is compiled
+   */
+  private boolean evaluate(String directive) {
+    int start = keywordStart(directive);
+    int end = keywordEnd(directive, start);
+    String keyword = directive.substring(start, end);
+    String argument = argument(directive, end);
+
+    if ("define".equals(keyword)) {
+      symbols.add(argument);
+    } else if ("undef".equals(keyword)) {
+      symbols.remove(argument);
+    } else if ("if".equals(keyword)) {
+      boolean compiled = new Condition(argument).evaluate();
+      sections.add(compiled);
+      return compiled;
+    } else if (sections.isEmpty()) {
+      // Either not a conditional directive, or an unbalanced one
+      return true;
+    } else if ("elif".equals(keyword)) {
+      return startSection(!lastSectionCompiled() && new Condition(argument).evaluate());
+    } else if ("else".equals(keyword)) {
+      return startSection(!lastSectionCompiled());
+    } else if ("endif".equals(keyword)) {
+      sections.remove(sections.size() - 1);
+    }
+    return true;
+  }
+
+  private boolean lastSectionCompiled() {
+    return sections.get(sections.size() - 1);
+  }
+
+  private boolean startSection(boolean compiled) {
+    if (compiled) {
+      sections.set(sections.size() - 1, true);
+    }
+    return compiled;
+  }
+
+  /**
+   * @return the index of the directive ending the section which is not compiled and starts at the first token, or of the end of file
+   */
+  private static int endOfSection(List<Token> tokens) {
+    int depth = 0;
+    int i = 1;
+    while (tokens.get(i).getType() != GenericTokenType.EOF) {
+      Token token = tokens.get(i);
+      if (token.getType() == CSharpTokenType.PREPROCESSOR) {
+        String directive = token.getValue();
+        int start = keywordStart(directive);
+        String keyword = directive.substring(start, keywordEnd(directive, start));
+        if ("if".equals(keyword)) {
+          depth++;
+        } else if ("endif".equals(keyword)) {
+          if (depth == 0) {
+            break;
+          }
+          depth--;
+        } else if (depth == 0 && ("elif".equals(keyword) || "else".equals(keyword))) {
+          break;
+        }
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static int keywordStart(String directive) {
+    int i = 1;
+    while (i < directive.length() && Character.isWhitespace(directive.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int keywordEnd(String directive, int start) {
+    int i = start;
+    while (i < directive.length() && Character.isLetter(directive.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static String argument(String directive, int start) {
+    int end = directive.indexOf("//", start);
+    return directive.substring(start, end == -1 ? directive.length() : end).trim();
+  }
+
+  /**
+   * <pre>
+   * or: and ("||" and)*
+   * and: equality ("&&" equality)*
+   * equality: unary (("==" | "!=") unary)*
+   * unary: "!" unary | "(" or ")" | "true" | "false" | symbol
+   * </pre>
+   */
+  private class Condition {
+
+    private final String expression;
+    private int index;
+    private boolean valid = true;
+
+    public Condition(String expression) {
+      this.expression = expression;
+    }
+
+    public boolean evaluate() {
+      boolean result = or();
+      skipWhitespaces();
+      return valid && index == expression.length() && result;
+    }
+
+    private boolean or() {
+      boolean result = and();
+      while (consume("||")) {
+        // Both operands are always parsed
+        result = and() || result;
+      }
+      return result;
+    }
+
+    private boolean and() {
+      boolean result = equality();
+      while (consume("&&")) {
+        result = equality() && result;
+      }
+      return result;
+    }
+
+    private boolean equality() {
+      boolean result = unary();
+      while (true) {
+        if (consume("==")) {
+          result = result == unary();
+        } else if (consume("!=")) {
+          result = result != unary();
+        } else {
+          return result;
+        }
+      }
+    }
+
+    private boolean unary() {
+      if (consume("!")) {
+        return !unary();
+      }
+      if (consume("(")) {
+        boolean result = or();
+        valid &= consume(")");
+        return result;
+      }
+
+      int start = index;
+      while (index < expression.length() && isSymbolChar(expression.charAt(index))) {
+        index++;
+      }
+      String symbol = expression.substring(start, index);
+      if (symbol.isEmpty()) {
+        valid = false;
+        return false;
+      }
+      return "true".equals(symbol) || (!"false".equals(symbol) && symbols.contains(symbol));
+    }
+
+    private boolean consume(String operator) {
+      skipWhitespaces();
+      if (expression.startsWith(operator, index)) {
+        index += operator.length();
+        return true;
+      }
+      return false;
+    }
+
+    private void skipWhitespaces() {
+      while (index < expression.length() && Character.isWhitespace(expression.charAt(index))) {
+        index++;
+      }
+    }
+
+  }
+
+  private static boolean isSymbolChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package com.sonar.csharp.squid.metric;
 
+import com.sonar.csharp.squid.AncestorTracker;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
@@ -27,16 +28,37 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.SquidAstVisitor;
 
+import javax.annotation.Nullable;
+
 /**
  * Visitor that computes the McCabe complexity.
  */
 public class CSharpComplexityVisitor extends SquidAstVisitor<Grammar> {
 
+  private final AncestorTracker ancestorTracker;
+
+  /**
+   * Looks for the block of each return statement among its ancestors.
+   */
+  public CSharpComplexityVisitor() {
+    this(null);
+  }
+
+  /**
+   * Gets the block of each return statement from the given tracker, which must visit the nodes before this visitor.
+   */
+  public CSharpComplexityVisitor(@Nullable AncestorTracker ancestorTracker) {
+    this.ancestorTracker = ancestorTracker;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void init() {
+    if (ancestorTracker != null) {
+      ancestorTracker.track(CSharpGrammar.BLOCK);
+    }
     subscribeTo(
         CSharpGrammar.IF_STATEMENT,
         CSharpGrammar.SWITCH_STATEMENT,
@@ -75,20 +97,10 @@ public class CSharpComplexityVisitor extends SquidAstVisitor<Grammar> {
   }
 
   private boolean isLastReturnStatement(AstNode node) {
-    AstNode currentNode = node;
-    AstNode parent = currentNode.getParent();
-    while (!parent.is(CSharpGrammar.BLOCK)) {
-      currentNode = parent;
-      parent = currentNode.getParent();
-    }
-    // here, parent is a block
-    if (!currentNode.getNextSibling().is(CSharpPunctuator.RCURLYBRACE)) {
-      return false;
-    }
-    if (isMemberBloc(parent.getParent())) {
-      return true;
-    }
-    return false;
+    AstNode block = ancestorTracker == null ? node.getFirstAncestor(CSharpGrammar.BLOCK) : ancestorTracker.getInnermost(CSharpGrammar.BLOCK);
+    // the statement of the block which contains the return statement must be the last one of the block
+    AstNode lastStatement = block.getLastChild().getPreviousSibling();
+    return node.getFromIndex() >= lastStatement.getFromIndex() && isMemberBloc(block.getParent());
   }
 
   private boolean isMemberBloc(AstNode parent) {
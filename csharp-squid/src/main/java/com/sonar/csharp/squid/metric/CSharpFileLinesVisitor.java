@@ -19,34 +19,25 @@
  */
 package com.sonar.csharp.squid.metric;
 
-import com.google.common.collect.Sets;
-import com.sonar.csharp.squid.api.CSharpMetric;
-import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.csharp.squid.FileLinesAwareVisitor;
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
-import com.sonar.sslr.api.Token;
-import com.sonar.sslr.api.Trivia;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.File;
 
-import java.util.List;
-import java.util.Set;
-
 /**
- * Visitor that computes the CoreMetrics.NCLOC_DATA_KEY & CoreMetrics.COMMENT_LINES_DATA_KEY metrics used by the DevCockpit.
+ * Visitor that saves the CoreMetrics.NCLOC_DATA_KEY & CoreMetrics.COMMENT_LINES_DATA_KEY metrics used by the DevCockpit, from the
+ * {@link FileLines} computed by {@link CSharpMetricsVisitor}.
  */
-public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements FileLinesAwareVisitor {
 
   private final FileProvider fileProvider;
   private final FileLinesContextFactory fileLinesContextFactory;
   private FileLinesContext fileLinesContext;
-
-  private final Set<Integer> linesOfCode = Sets.newHashSet();
-  private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private FileLines fileLines;
 
   public CSharpFileLinesVisitor(FileProvider fileProvider, FileLinesContextFactory fileLinesContextFactory) {
     this.fileProvider = fileProvider;
@@ -54,46 +45,29 @@ public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements
   }
 
   @Override
-  public void visitFile(AstNode astNode) {
-    File sonarFile = fileProvider.fromIOFile(getContext().getFile());
-    fileLinesContext = fileLinesContextFactory.createFor(sonarFile);
+  public void setFileLines(FileLines fileLines) {
+    this.fileLines = fileLines;
   }
 
   @Override
-  public void leaveFile(AstNode astNode) {
-    int fileLength = getContext().peekSourceCode().getInt(CSharpMetric.LINES);
-
-    for (int line = 1; line <= fileLength; line++) {
-      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.contains(line) ? 1 : 0);
-      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.contains(line) ? 1 : 0);
+  public void visitFile(AstNode astNode) {
+    File sonarFile = fileProvider.fromIOFile(getContext().getFile());
+    // Several instances of this visitor may share the factory when files are scanned in parallel
+    synchronized (fileLinesContextFactory) {
+      fileLinesContext = fileLinesContextFactory.createFor(sonarFile);
     }
-    fileLinesContext.save();
-
-    linesOfCode.clear();
-    linesOfComments.clear();
   }
 
   @Override
-  public void visitToken(Token token) {
-    if (token.getType().equals(GenericTokenType.EOF)) {
-      return;
-    }
+  public void leaveFile(AstNode astNode) {
+    int fileLength = fileLines.getLines();
 
-    addTokenLinesToSet(linesOfCode, token);
-    List<Trivia> trivias = token.getTrivia();
-    for (Trivia trivia : trivias) {
-      if (trivia.isComment()) {
-        addTokenLinesToSet(linesOfComments, trivia.getToken());
+    synchronized (fileLinesContextFactory) {
+      for (int line = 1; line <= fileLength; line++) {
+        fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, fileLines.isLineOfCode(line) ? 1 : 0);
+        fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, fileLines.isCommentLine(line) ? 1 : 0);
       }
-    }
-  }
-
-  private static void addTokenLinesToSet(Set<Integer> set, Token token) {
-    int currentLine = token.getLine();
-
-    for (String line : token.getOriginalValue().split("\r\n?+|\n", -1)) {
-      set.add(currentLine);
-      currentLine++;
+      fileLinesContext.save();
     }
   }
 
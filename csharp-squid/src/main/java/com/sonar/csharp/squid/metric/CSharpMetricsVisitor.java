@@ -0,0 +1,207 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.metric;
+
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.sonar.squidbridge.CommentAnalyser;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Visitor that computes, in a single pass over the tokens, the lines, lines of code, comment lines and NOSONAR lines, and that counts
+ * the statements and accessors. It gives the same results as the LinesVisitor, LinesOfCodeVisitor, CommentsVisitor and CounterVisitor
+ * of the squid bridge, and also fills the {@link FileLines} of the current file.
+ */
+public class CSharpMetricsVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+  private static final String NOSONAR = "NOSONAR";
+
+  private final boolean ignoreHeaderComments;
+  private final FileLines fileLines;
+  private final BitSet commentLines = new BitSet();
+  private final BitSet noSonarLines = new BitSet();
+  private int lastTokenLine;
+  private boolean seenFirstToken;
+
+  public CSharpMetricsVisitor(CSharpConfiguration conf, FileLines fileLines) {
+    this.ignoreHeaderComments = conf.getIgnoreHeaderComments();
+    this.fileLines = fileLines;
+  }
+
+  @Override
+  public void init() {
+    subscribeTo(
+        CSharpGrammar.LABELED_STATEMENT,
+        CSharpGrammar.DECLARATION_STATEMENT,
+        CSharpGrammar.EXPRESSION_STATEMENT,
+        CSharpGrammar.SELECTION_STATEMENT,
+        CSharpGrammar.ITERATION_STATEMENT,
+        CSharpGrammar.JUMP_STATEMENT,
+        CSharpGrammar.TRY_STATEMENT,
+        CSharpGrammar.CHECKED_STATEMENT,
+        CSharpGrammar.UNCHECKED_STATEMENT,
+        CSharpGrammar.LOCK_STATEMENT,
+        CSharpGrammar.USING_STATEMENT,
+        CSharpGrammar.YIELD_STATEMENT,
+        CSharpGrammar.GET_ACCESSOR_DECLARATION,
+        CSharpGrammar.SET_ACCESSOR_DECLARATION,
+        CSharpGrammar.ADD_ACCESSOR_DECLARATION,
+        CSharpGrammar.REMOVE_ACCESSOR_DECLARATION);
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    fileLines.clear();
+    commentLines.clear();
+    noSonarLines.clear();
+    lastTokenLine = -1;
+    seenFirstToken = false;
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    boolean accessor = astNode.is(
+        CSharpGrammar.GET_ACCESSOR_DECLARATION,
+        CSharpGrammar.SET_ACCESSOR_DECLARATION,
+        CSharpGrammar.ADD_ACCESSOR_DECLARATION,
+        CSharpGrammar.REMOVE_ACCESSOR_DECLARATION);
+    getContext().peekSourceCode().add(accessor ? CSharpMetric.ACCESSORS : CSharpMetric.STATEMENTS, 1);
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    boolean eof = token.getType() == GenericTokenType.EOF;
+    if (eof) {
+      getContext().peekSourceCode().setMeasure(CSharpMetric.LINES, token.getLine());
+      fileLines.setLines(token.getLine());
+    } else {
+      int line = token.getLine();
+      int newLines = count(token.getValue(), '\n');
+      getContext().peekSourceCode().add(CSharpMetric.LINES_OF_CODE, lastTokenLine == line ? newLines : newLines + 1);
+      lastTokenLine = line + newLines;
+      fileLines.addLinesOfCode(line, line + lineBreaks(token.getOriginalValue()));
+    }
+
+    if (token.hasTrivia()) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isComment()) {
+          Token comment = trivia.getToken();
+          if (!eof) {
+            fileLines.addCommentLines(comment.getLine(), comment.getLine() + lineBreaks(comment.getOriginalValue()));
+          }
+          if (!ignoreHeaderComments || seenFirstToken) {
+            addCommentLines(comment);
+          }
+        }
+      }
+    }
+    seenFirstToken = true;
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    SourceCode sourceFile = getContext().peekSourceCode();
+    if (!noSonarLines.isEmpty()) {
+      Set<Integer> lines = Sets.newHashSet();
+      for (int line = noSonarLines.nextSetBit(0); line >= 0; line = noSonarLines.nextSetBit(line + 1)) {
+        lines.add(line);
+      }
+      ((SourceFile) sourceFile).addNoSonarTagLines(lines);
+    }
+    sourceFile.add(CSharpMetric.COMMENT_LINES, commentLines.cardinality());
+  }
+
+  /**
+   * Each line of the contents of a comment is either a NOSONAR line, or a comment line unless it is blank.
+   */
+  private void addCommentLines(Token comment) {
+    CommentAnalyser commentAnalyser = getContext().getCommentAnalyser();
+    String contents = commentAnalyser.getContents(comment.getOriginalValue());
+    int line = comment.getLine();
+    int start = 0;
+    int noSonar = contents.indexOf(NOSONAR);
+    while (true) {
+      int end = lineEnd(contents, start);
+      if (noSonar != -1 && noSonar < start) {
+        noSonar = contents.indexOf(NOSONAR, start);
+      }
+      if (noSonar != -1 && noSonar < end) {
+        noSonarLines.set(line);
+        commentLines.clear(line);
+      } else if (!noSonarLines.get(line) && !commentAnalyser.isBlank(start == 0 && end == contents.length() ? contents : contents.substring(start, end))) {
+        commentLines.set(line);
+      }
+
+      if (end == contents.length()) {
+        return;
+      }
+      start = contents.startsWith("\r\n", end) ? end + 2 : end + 1;
+      line++;
+    }
+  }
+
+  private static int lineEnd(String value, int start) {
+    for (int i = start; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\r' || c == '\n') {
+        return i;
+      }
+    }
+    return value.length();
+  }
+
+  /**
+   * @return the number of line breaks of the given value, each of them being either "\r\n", "\r" or "\n"
+   */
+  static int lineBreaks(String value) {
+    int result = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || (c == '\r' && (i + 1 == value.length() || value.charAt(i + 1) != '\n'))) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  private static int count(String value, char c) {
+    int result = 0;
+    for (int i = value.indexOf(c); i != -1; i = value.indexOf(c, i + 1)) {
+      result++;
+    }
+    return result;
+  }
+
+}
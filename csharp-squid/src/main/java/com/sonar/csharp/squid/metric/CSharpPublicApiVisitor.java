@@ -20,6 +20,7 @@
 package com.sonar.csharp.squid.metric;
 
 import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.AncestorTracker;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
@@ -29,6 +30,8 @@ import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Trivia;
 import org.sonar.squidbridge.SquidAstVisitor;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 import java.util.Map;
 
@@ -38,12 +41,30 @@ import java.util.Map;
 public class CSharpPublicApiVisitor extends SquidAstVisitor<Grammar> {
 
   private final Map<AstNodeType, AstNodeType> modifiersMap = Maps.newHashMap();
+  private final AncestorTracker ancestorTracker;
+
+  /**
+   * Looks for the interface of each interface member among its ancestors.
+   */
+  public CSharpPublicApiVisitor() {
+    this(null);
+  }
+
+  /**
+   * Gets the interface of each interface member from the given tracker, which must visit the nodes before this visitor.
+   */
+  public CSharpPublicApiVisitor(@Nullable AncestorTracker ancestorTracker) {
+    this.ancestorTracker = ancestorTracker;
+  }
 
   /**
    * {@inheritDoc}
    */
   @Override
   public void init() {
+    if (ancestorTracker != null) {
+      ancestorTracker.track(CSharpGrammar.INTERFACE_DECLARATION);
+    }
     modifiersMap.put(CSharpGrammar.CLASS_DECLARATION, CSharpGrammar.CLASS_MODIFIER);
     modifiersMap.put(CSharpGrammar.STRUCT_DECLARATION, CSharpGrammar.STRUCT_MODIFIER);
     modifiersMap.put(CSharpGrammar.INTERFACE_DECLARATION, CSharpGrammar.INTERFACE_MODIFIER);
@@ -74,7 +95,7 @@ public class CSharpPublicApiVisitor extends SquidAstVisitor<Grammar> {
     if (node.getType().equals(CSharpGrammar.INTERFACE_METHOD_DECLARATION) || node.getType().equals(CSharpGrammar.INTERFACE_PROPERTY_DECLARATION)
       || node.getType().equals(CSharpGrammar.INTERFACE_EVENT_DECLARATION) || node.getType().equals(CSharpGrammar.INTERFACE_INDEXER_DECLARATION)) {
       // then we must look at the visibility of the enclosing interface definition
-      isPublicApi = checkNodeForPublicModifier(node.getFirstAncestor(CSharpGrammar.INTERFACE_DECLARATION), CSharpGrammar.INTERFACE_MODIFIER);
+      isPublicApi = checkNodeForPublicModifier(enclosingInterface(node), CSharpGrammar.INTERFACE_MODIFIER);
     } else {
       isPublicApi = checkNodeForPublicModifier(node, modifiersMap.get(nodeType));
     }
@@ -84,6 +105,11 @@ public class CSharpPublicApiVisitor extends SquidAstVisitor<Grammar> {
     }
   }
 
+  private AstNode enclosingInterface(AstNode node) {
+    return ancestorTracker == null ? node.getFirstAncestor(CSharpGrammar.INTERFACE_DECLARATION)
+        : ancestorTracker.getInnermost(CSharpGrammar.INTERFACE_DECLARATION);
+  }
+
   private boolean checkNodeForPublicModifier(AstNode currentNode, AstNodeType wantedChildrenType) {
     List<AstNode> modifiers = currentNode.getChildren(wantedChildrenType);
     for (AstNode astNode : modifiers) {
@@ -0,0 +1,68 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.metric;
+
+import java.util.BitSet;
+
+/**
+ * Lines of code and comment lines of the file being scanned, filled by {@link CSharpMetricsVisitor}. Unlike the
+ * {@link com.sonar.csharp.squid.api.CSharpMetric#COMMENT_LINES} metric, the comment lines include the header comments, the blank
+ * comment lines and the NOSONAR ones.
+ */
+public class FileLines {
+
+  private final BitSet linesOfCode = new BitSet();
+  private final BitSet commentLines = new BitSet();
+  private int lines;
+
+  void clear() {
+    linesOfCode.clear();
+    commentLines.clear();
+    lines = 0;
+  }
+
+  void addLinesOfCode(int fromLine, int toLine) {
+    linesOfCode.set(fromLine, toLine + 1);
+  }
+
+  void addCommentLines(int fromLine, int toLine) {
+    commentLines.set(fromLine, toLine + 1);
+  }
+
+  void setLines(int lines) {
+    this.lines = lines;
+  }
+
+  /**
+   * @return the number of lines of the file, 0 if it could not be parsed
+   */
+  public int getLines() {
+    return lines;
+  }
+
+  public boolean isLineOfCode(int line) {
+    return linesOfCode.get(line);
+  }
+
+  public boolean isCommentLine(int line) {
+    return commentLines.get(line);
+  }
+
+}
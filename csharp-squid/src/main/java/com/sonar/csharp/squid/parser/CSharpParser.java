@@ -37,8 +37,11 @@ public final class CSharpParser {
     return create(new CSharpConfiguration(), parsingEventListeners);
   }
 
+  /**
+   * Creates a parser with a grammar of its own, which can be modified. See {@link CSharpParserPool} for parsers sharing the same grammar.
+   */
   public static Parser<Grammar> create(CSharpConfiguration conf, ParsingEventListener... parsingEventListeners) {
-    return Parser.builder(CSharpGrammar.create().buildWithMemoizationOfMatchesForAllRules())
+    return Parser.builder(conf.getMemoizationPolicy().build(CSharpGrammar.create()))
         .withLexer(CSharpLexer.create(conf))
         .setParsingEventListeners(parsingEventListeners)
         .build();
@@ -0,0 +1,315 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.SourceBuffer;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Process-wide pool of parsers which share the same grammar, built once per {@link MemoizationPolicy}. Unlike the ones of
+ * {@link CSharpParser#create(CSharpConfiguration, com.sonar.sslr.impl.events.ParsingEventListener...)}, the grammar of these parsers
+ * must not be modified.
+ * <p>
+ * There is one pool per charset, memoization policy, kind of lexer, defined symbols and parse budget, the lexer of the parsers
+ * using the default preprocessors. Only the pools of the {@value #MAXIMUM_POOLS} configurations used last are kept.
+ * A file exceeding the parse budget is not parsed, see {@link UnparsedFile}.
+ * A parser is not thread-safe: it is either owned by its user, see {@link #newParser()}, or borrowed for the time of a parse.
+ * </p>
+ */
+public final class CSharpParserPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpParserPool.class);
+
+  static final int MAXIMUM_POOLS = 8;
+
+  private static final Map<MemoizationPolicy, Grammar> GRAMMARS = new EnumMap<MemoizationPolicy, Grammar>(MemoizationPolicy.class);
+  private static final Cache<Key, CSharpParserPool> POOLS = CacheBuilder.newBuilder()
+      // A single segment, so that the pools of the configurations used last are the ones kept
+      .concurrencyLevel(1)
+      .maximumSize(MAXIMUM_POOLS)
+      .build(new CacheLoader<Key, CSharpParserPool>() {
+        @Override
+        public CSharpParserPool load(Key key) {
+          return new CSharpParserPool(key);
+        }
+      });
+
+  private final CSharpConfiguration conf;
+  private final Grammar grammar;
+  private final Queue<Parser<Grammar>> idleParsers = new ConcurrentLinkedQueue<Parser<Grammar>>();
+
+  private CSharpParserPool(Key key) {
+    this.conf = new CSharpConfiguration(key.charset);
+    this.conf.setMemoizationPolicy(key.memoizationPolicy);
+    this.conf.setStateMachineLexer(key.stateMachineLexer);
+    this.conf.setParseTimeout(key.parseTimeout);
+    this.conf.setParseTokenLimit(key.parseTokenLimit);
+    this.conf.setDefinedSymbols(key.definedSymbols);
+    this.grammar = grammar(key.memoizationPolicy);
+  }
+
+  /**
+   * @return the pool of the charset, memoization policy, kind of lexer, defined symbols and parse budget of the given configuration
+   */
+  public static CSharpParserPool get(CSharpConfiguration conf) {
+    return POOLS.getUnchecked(new Key(conf));
+  }
+
+  private static synchronized Grammar grammar(MemoizationPolicy memoizationPolicy) {
+    Grammar result = GRAMMARS.get(memoizationPolicy);
+    if (result == null) {
+      result = memoizationPolicy.build(CSharpGrammar.create());
+      GRAMMARS.put(memoizationPolicy, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return the grammar shared by the parsers of this pool, which must not be modified
+   */
+  public Grammar getGrammar() {
+    return grammar;
+  }
+
+  /**
+   * Creates a parser which is not returned to the pool, for instance to be used for a whole scan.
+   */
+  public Parser<Grammar> newParser() {
+    return new SharedGrammarParser(grammar, CSharpLexer.create(conf), null, conf);
+  }
+
+  /**
+   * Creates a parser which is not returned to the pool, and which reads files into the given buffer before lexing them.
+   */
+  public Parser<Grammar> newParser(SourceBuffer sourceBuffer) {
+    return new SharedGrammarParser(grammar, CSharpLexer.create(conf), sourceBuffer, conf);
+  }
+
+  /**
+   * Takes an idle parser from the pool, or creates one if there is none. The parser must be given back with {@link #release(Parser)}.
+   */
+  public Parser<Grammar> borrow() {
+    Parser<Grammar> parser = idleParsers.poll();
+    return parser == null ? newParser() : parser;
+  }
+
+  /**
+   * Gives back a parser taken from this pool, whose root rule is reset to the one of the grammar.
+   */
+  public void release(Parser<Grammar> parser) {
+    parser.setRootRule(grammar.getRootRule());
+    idleParsers.offer(parser);
+  }
+
+  private static class Key {
+
+    private final Charset charset;
+    private final MemoizationPolicy memoizationPolicy;
+    private final boolean stateMachineLexer;
+    private final long parseTimeout;
+    private final int parseTokenLimit;
+    private final Set<String> definedSymbols;
+
+    public Key(CSharpConfiguration conf) {
+      this.charset = conf.getCharset();
+      this.memoizationPolicy = conf.getMemoizationPolicy();
+      this.stateMachineLexer = conf.getStateMachineLexer();
+      this.parseTimeout = conf.getParseTimeout();
+      this.parseTokenLimit = conf.getParseTokenLimit();
+      this.definedSymbols = conf.getDefinedSymbols();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return charset.equals(other.charset) && memoizationPolicy == other.memoizationPolicy && stateMachineLexer == other.stateMachineLexer
+        && parseTimeout == other.parseTimeout && parseTokenLimit == other.parseTokenLimit && definedSymbols.equals(other.definedSymbols);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(charset, memoizationPolicy, stateMachineLexer, parseTimeout, parseTokenLimit, definedSymbols);
+    }
+
+  }
+
+  /**
+   * Parser of the shared grammar, which builds its trees with {@link Parser#parse(List)}, and which gives up the files exceeding
+   * the parse budget.
+   * <p>
+   * When a parse timeout is set, the parse is run by a thread of this parser and waited for at most the timeout. A parse cannot
+   * be interrupted: once it times out, it is left to its thread, which ends with it, and the next parses are run by a new thread.
+   * </p>
+   */
+  private static class SharedGrammarParser extends Parser<Grammar> {
+
+    private final Lexer lexer;
+    private final SourceBuffer sourceBuffer;
+    private final long parseTimeout;
+    private final int parseTokenLimit;
+    private ExecutorService parseThread;
+    private File file;
+
+    public SharedGrammarParser(Grammar grammar, Lexer lexer, @Nullable SourceBuffer sourceBuffer, CSharpConfiguration conf) {
+      super(grammar);
+      this.lexer = lexer;
+      this.sourceBuffer = sourceBuffer;
+      this.parseTimeout = conf.getParseTimeout();
+      this.parseTokenLimit = conf.getParseTokenLimit();
+      setRootRule(grammar.getRootRule());
+    }
+
+    @Override
+    public AstNode parse(File file) {
+      this.file = file;
+      try {
+        return parse(lex(file));
+      } finally {
+        this.file = null;
+      }
+    }
+
+    private List<Token> lex(File file) {
+      if (sourceBuffer == null) {
+        try {
+          return lexer.lex(file);
+        } catch (LexerException e) {
+          throw new RecognitionException(e);
+        }
+      }
+
+      try {
+        return lexer.lex(sourceBuffer.read(file));
+      } catch (IOException e) {
+        throw new RecognitionException(new LexerException("Unable to lex file: " + file.getAbsolutePath(), e));
+      } catch (LexerException e) {
+        // The message of the exception thrown when lexing a string contains the whole source code
+        throw new RecognitionException(new LexerException("Unable to lex file: " + file.getAbsolutePath(), e.getCause()));
+      }
+    }
+
+    @Override
+    public AstNode parse(String source) {
+      try {
+        return parse(lexer.lex(source));
+      } catch (LexerException e) {
+        throw new RecognitionException(e);
+      }
+    }
+
+    @Override
+    public AstNode parse(List<Token> tokens) {
+      if (parseTokenLimit != 0 && tokens.size() > parseTokenLimit) {
+        LOG.warn("{} is not parsed, as it has {} tokens while the limit is {}", new Object[] {describeFile(), tokens.size(), parseTokenLimit});
+        return UnparsedFile.create(UnparsedFile.TOO_MANY_TOKENS, tokens);
+      }
+      if (parseTimeout == 0) {
+        return super.parse(tokens);
+      }
+
+      Future<AstNode> result = parseThread().submit(new TimedParse(tokens));
+      try {
+        return result.get(parseTimeout, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        result.cancel(true);
+        parseThread.shutdown();
+        parseThread = null;
+        LOG.warn("The parsing of {} is given up, as it takes longer than {} ms", describeFile(), parseTimeout);
+        return UnparsedFile.create(UnparsedFile.TIMEOUT, tokens);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      } catch (InterruptedException e) {
+        result.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while parsing " + describeFile(), e);
+      }
+    }
+
+    private ExecutorService parseThread() {
+      if (parseThread == null) {
+        // The thread ends when the parser is no longer used
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+          new ThreadFactoryBuilder().setNameFormat("C# parser %d").setDaemon(true).build());
+        parseThread = executor;
+      }
+      return parseThread;
+    }
+
+    private String describeFile() {
+      return file == null ? "A file" : file.getPath();
+    }
+
+    private class TimedParse implements Callable<AstNode> {
+
+      private final List<Token> tokens;
+
+      public TimedParse(List<Token> tokens) {
+        this.tokens = tokens;
+      }
+
+      @Override
+      public AstNode call() {
+        return SharedGrammarParser.super.parse(tokens);
+      }
+
+    }
+
+  }
+
+}
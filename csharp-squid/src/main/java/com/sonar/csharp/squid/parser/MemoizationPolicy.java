@@ -0,0 +1,79 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+
+import java.util.Set;
+
+/**
+ * Rules of the grammar whose matches are memoized by the parser, so that they are not matched again at the same position after a
+ * backtrack. Memoization never changes the resulting syntax tree, only the time and memory spent to build it.
+ */
+public enum MemoizationPolicy {
+
+  NONE {
+    @Override
+    public Grammar build(LexerfulGrammarBuilder b) {
+      return b.build();
+    }
+  },
+
+  ALL {
+    @Override
+    public Grammar build(LexerfulGrammarBuilder b) {
+      return b.buildWithMemoizationOfMatchesForAllRules();
+    }
+  },
+
+  /**
+   * Only the rules which are frequently matched again at the same position, as measured with {@link MemoizationStatistics}.
+   */
+  CURATED {
+    @Override
+    public Grammar build(LexerfulGrammarBuilder b) {
+      Grammar grammar = b.build();
+      for (CSharpGrammar ruleKey : CURATED_RULES) {
+        ((RuleDefinition) grammar.rule(ruleKey)).enableMemoization();
+      }
+      return grammar;
+    }
+  };
+
+  static final Set<CSharpGrammar> CURATED_RULES = ImmutableSet.of(
+      CSharpGrammar.TYPE_PRIMARY,
+      CSharpGrammar.TYPE,
+      CSharpGrammar.NULLABLE_TYPE,
+      CSharpGrammar.ARRAY_TYPE,
+      CSharpGrammar.TYPE_ARGUMENT_LIST,
+      CSharpGrammar.POST_MEMBER_ACCESS,
+      CSharpGrammar.POST_INVOCATION,
+      CSharpGrammar.ARGUMENT_LIST,
+      CSharpGrammar.MEMBER_NAME,
+      CSharpGrammar.UNARY_EXPRESSION,
+      CSharpGrammar.EXPRESSION,
+      CSharpGrammar.ATTRIBUTES);
+
+  public abstract Grammar build(LexerfulGrammarBuilder b);
+
+}
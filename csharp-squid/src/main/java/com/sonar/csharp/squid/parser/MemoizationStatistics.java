@@ -0,0 +1,205 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.Instruction;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MachineStack;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures, for each rule of the grammar, how many times the parser calls it and how many of those calls are answered from the
+ * memoized matches, when parsing a corpus with the memoization policy of the given configuration.
+ * <p>
+ * Rules frequently called again at the same position show up with a high number of hits when all of them are memoized, and
+ * are the candidates for {@link MemoizationPolicy#CURATED}.
+ * </p>
+ */
+public class MemoizationStatistics {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MemoizationStatistics.class);
+
+  private final Map<Matcher, RuleStatistics> rules = Maps.newHashMap();
+  private int files;
+  private int failures;
+
+  public static MemoizationStatistics collect(CSharpConfiguration conf, Collection<File> files) {
+    MemoizationStatistics statistics = new MemoizationStatistics();
+    Lexer lexer = CSharpLexer.create(conf);
+    Parser<Grammar> parser = CSharpParser.create(conf);
+    CompiledGrammar compiledGrammar = statistics.instrument(MutableGrammarCompiler.compile(parser.getRootRule()));
+
+    for (File file : files) {
+      statistics.files++;
+      try {
+        Machine.parse(lexer.lex(file), compiledGrammar);
+      } catch (RecognitionException e) {
+        LOG.debug("Unable to parse " + file, e);
+        statistics.failures++;
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Replaces every call of a rule by one which counts the call and whether it was answered from the memoized matches.
+   */
+  private CompiledGrammar instrument(CompiledGrammar compiledGrammar) {
+    Instruction[] instructions = compiledGrammar.getInstructions();
+    for (int i = 0; i < instructions.length; i++) {
+      if (instructions[i] instanceof Instruction.CallInstruction) {
+        instructions[i] = new CountingCallInstruction(instructions[i]);
+      }
+    }
+    return compiledGrammar;
+  }
+
+  private RuleStatistics ruleStatistics(Matcher matcher) {
+    RuleStatistics result = rules.get(matcher);
+    if (result == null) {
+      result = new RuleStatistics(((RuleDefinition) matcher).getName());
+      rules.put(matcher, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return the statistics of the called rules, the ones with the most hits first
+   */
+  public List<RuleStatistics> getRules() {
+    List<RuleStatistics> result = Lists.newArrayList(rules.values());
+    Collections.sort(result, new Comparator<RuleStatistics>() {
+      @Override
+      public int compare(RuleStatistics r1, RuleStatistics r2) {
+        if (r1.hits != r2.hits) {
+          return r1.hits > r2.hits ? -1 : 1;
+        }
+        return r1.name.compareTo(r2.name);
+      }
+    });
+    return result;
+  }
+
+  public int getFiles() {
+    return files;
+  }
+
+  /**
+   * @return the number of files which could not be parsed, whose calls are nevertheless counted
+   */
+  public int getFailures() {
+    return failures;
+  }
+
+  @Override
+  public String toString() {
+    RuleStatistics total = new RuleStatistics("total");
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-50s %12s %12s %8s%n", "rule", "calls", "hits", "hit rate"));
+    for (RuleStatistics rule : getRules()) {
+      append(sb, rule);
+      total.calls += rule.calls;
+      total.hits += rule.hits;
+    }
+    append(sb, total);
+    return sb.toString();
+  }
+
+  private static void append(StringBuilder sb, RuleStatistics rule) {
+    sb.append(String.format("%-50s %12d %12d %7.1f%%%n", rule.name, rule.calls, rule.hits, rule.getHitRate() * 100));
+  }
+
+  public static class RuleStatistics {
+
+    private final String name;
+    private long calls;
+    private long hits;
+
+    RuleStatistics(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCalls() {
+      return calls;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public double getHitRate() {
+      return calls == 0 ? 0 : (double) hits / calls;
+    }
+
+  }
+
+  private class CountingCallInstruction extends Instruction {
+
+    private final Instruction delegate;
+
+    public CountingCallInstruction(Instruction delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      MachineStack frame = machine.peek();
+      delegate.execute(machine);
+
+      RuleStatistics statistics;
+      if (machine.peek() == frame) {
+        // No new frame: the memoized match of the rule has been appended to the current one
+        List<ParseNode> subNodes = frame.subNodes();
+        statistics = ruleStatistics(subNodes.get(subNodes.size() - 1).getMatcher());
+        statistics.hits++;
+      } else {
+        statistics = ruleStatistics(machine.peek().matcher());
+      }
+      statistics.calls++;
+    }
+
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Token;
+
+import java.util.List;
+
+/**
+ * Types of the nodes of the tree given to the visitors for a file whose parsing exceeded its budget, see
+ * {@link com.sonar.csharp.squid.CSharpConfiguration#setParseTimeout(long)} and
+ * {@link com.sonar.csharp.squid.CSharpConfiguration#setParseTokenLimit(int)}.
+ * <p>
+ * Such a tree only holds the tokens of the file, so that the metrics computed from tokens (lines, lines of code and comment lines)
+ * are still available. Its root tells which budget was exceeded.
+ * </p>
+ */
+public enum UnparsedFile implements AstNodeType {
+
+  /**
+   * Root of a file whose parsing took longer than the parse timeout.
+   */
+  TIMEOUT,
+
+  /**
+   * Root of a file having more tokens than the parse token limit.
+   */
+  TOO_MANY_TOKENS,
+
+  /**
+   * Parent of each token of an unparsed file, so that visitors subscribed to token types are not given nodes without their usual parents.
+   */
+  TOKEN;
+
+  static AstNode create(UnparsedFile root, List<Token> tokens) {
+    AstNode result = new AstNode(root, root.name(), tokens.isEmpty() ? null : tokens.get(0));
+    for (Token token : tokens) {
+      result.addChild(new AstNode(TOKEN, TOKEN.name(), token));
+    }
+    return result;
+  }
+
+}
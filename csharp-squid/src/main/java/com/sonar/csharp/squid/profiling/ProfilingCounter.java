@@ -0,0 +1,67 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+/**
+ * Time spent in, and number of invocations of, a phase of the scan or a visitor. Each counter is only updated by a single thread.
+ */
+class ProfilingCounter {
+
+  enum Kind {
+    PHASE, VISITOR
+  }
+
+  private final Kind kind;
+  private final String name;
+  private long nanos;
+  private long invocations;
+
+  ProfilingCounter(Kind kind, String name) {
+    this.kind = kind;
+    this.name = name;
+  }
+
+  void add(long elapsedNanos) {
+    nanos += elapsedNanos;
+    invocations++;
+  }
+
+  void add(ProfilingCounter other) {
+    nanos += other.nanos;
+    invocations += other.invocations;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  long getNanos() {
+    return nanos;
+  }
+
+  long getInvocations() {
+    return invocations;
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+import com.sonar.csharp.squid.SourceBuffer;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Rule;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Parser which separately measures the time spent reading, lexing and parsing files.
+ */
+class ProfilingParser extends Parser<Grammar> {
+
+  private final Parser<Grammar> delegate;
+  private final Lexer lexer;
+  private final SourceBuffer sourceBuffer;
+  private final ProfilingCounter read;
+  private final ProfilingCounter lex;
+  private final ProfilingCounter parse;
+
+  ProfilingParser(Parser<Grammar> delegate, Lexer lexer, SourceBuffer sourceBuffer, ScanProfiler profiler) {
+    super(delegate.getGrammar());
+    this.delegate = delegate;
+    this.lexer = lexer;
+    this.sourceBuffer = sourceBuffer;
+    this.read = profiler.newCounter(ProfilingCounter.Kind.PHASE, ScanProfiler.READ);
+    this.lex = profiler.newCounter(ProfilingCounter.Kind.PHASE, ScanProfiler.LEX);
+    this.parse = profiler.newCounter(ProfilingCounter.Kind.PHASE, ScanProfiler.PARSE);
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    long start = System.nanoTime();
+    String source;
+    try {
+      source = sourceBuffer.read(file);
+    } catch (IOException e) {
+      throw new RecognitionException(new LexerException("Unable to lex file: " + file.getAbsolutePath(), e));
+    }
+    read.add(System.nanoTime() - start);
+
+    start = System.nanoTime();
+    List<Token> tokens;
+    try {
+      tokens = lexer.lex(source);
+    } catch (LexerException e) {
+      // The message of the exception thrown when lexing a string contains the whole source code
+      throw new RecognitionException(new LexerException("Unable to lex file: " + file.getAbsolutePath(), e.getCause()));
+    }
+    lex.add(System.nanoTime() - start);
+
+    return parse(tokens);
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return delegate.parse(source);
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    long start = System.nanoTime();
+    AstNode astNode = delegate.parse(tokens);
+    parse.add(System.nanoTime() - start);
+    return astNode;
+  }
+
+  @Override
+  public RuleDefinition getRootRule() {
+    return delegate.getRootRule();
+  }
+
+  @Override
+  public void setRootRule(Rule rootRule) {
+    delegate.setRootRule(rootRule);
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Forwards all the events to a visitor, measuring the time it spends handling them.
+ */
+class ProfilingVisitor extends SquidAstVisitor<Grammar> implements AstScannerExceptionHandler {
+
+  protected final SquidAstVisitor<Grammar> delegate;
+  protected final ProfilingCounter counter;
+
+  ProfilingVisitor(SquidAstVisitor<Grammar> delegate, ProfilingCounter counter) {
+    this.delegate = delegate;
+    this.counter = counter;
+  }
+
+  SquidAstVisitor<Grammar> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void setContext(SquidAstVisitorContext<Grammar> context) {
+    super.setContext(context);
+    delegate.setContext(context);
+  }
+
+  @Override
+  public List<AstNodeType> getAstNodeTypesToVisit() {
+    return delegate.getAstNodeTypesToVisit();
+  }
+
+  @Override
+  public void init() {
+    long start = System.nanoTime();
+    delegate.init();
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.visitFile(astNode);
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.visitNode(astNode);
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.leaveNode(astNode);
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.leaveFile(astNode);
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void destroy() {
+    long start = System.nanoTime();
+    delegate.destroy();
+    counter.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void processException(Exception e) {
+    if (delegate instanceof AstScannerExceptionHandler) {
+      long start = System.nanoTime();
+      ((AstScannerExceptionHandler) delegate).processException(e);
+      counter.add(System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void processRecognitionException(RecognitionException e) {
+    if (delegate instanceof AstScannerExceptionHandler) {
+      long start = System.nanoTime();
+      ((AstScannerExceptionHandler) delegate).processRecognitionException(e);
+      counter.add(System.nanoTime() - start);
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.SourceBuffer;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time spent in each phase of a scan (reading, lexing and parsing files, then visiting their syntax trees), and in
+ * each visitor. Once the scan is over, {@link #report()} logs the counters sorted by decreasing time, and writes them to a CSV file.
+ * <p>
+ * Counters are created by the profiled parsers and visitors of each worker of the scan, and are only read once all the workers are
+ * done, so that measuring does not require any synchronization.
+ * </p>
+ */
+public class ScanProfiler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScanProfiler.class);
+
+  static final String READ = "read";
+  static final String LEX = "lex";
+  static final String PARSE = "parse";
+  static final String VISIT = "visit";
+
+  private final File reportFile;
+  private final List<ProfilingCounter> counters = Lists.newArrayList();
+
+  public ScanProfiler(File reportFile) {
+    this.reportFile = reportFile;
+  }
+
+  synchronized ProfilingCounter newCounter(ProfilingCounter.Kind kind, String name) {
+    ProfilingCounter counter = new ProfilingCounter(kind, name);
+    counters.add(counter);
+    return counter;
+  }
+
+  /**
+   * @param parser parser to which the parsing of the tokens is delegated
+   * @param lexer lexer used to lex the files, must be the same as the one of the parser
+   * @param sourceBuffer buffer into which the files are read
+   */
+  public Parser<Grammar> profile(Parser<Grammar> parser, Lexer lexer, SourceBuffer sourceBuffer) {
+    return new ProfilingParser(parser, lexer, sourceBuffer, this);
+  }
+
+  public SquidAstVisitor<Grammar> profile(SquidAstVisitor<Grammar> visitor) {
+    ProfilingCounter counter = newCounter(ProfilingCounter.Kind.VISITOR, visitor.getClass().getName());
+    return visitor instanceof AstAndTokenVisitor ? new TokenProfilingVisitor(visitor, counter) : new ProfilingVisitor(visitor, counter);
+  }
+
+  /**
+   * Visitor measuring the time spent by all the visitors of a file: it must be the first visitor of the scanner, so that it is the
+   * first one to visit the file and the last one to leave it.
+   */
+  public SquidAstVisitor<Grammar> newVisitPhaseVisitor() {
+    final ProfilingCounter counter = newCounter(ProfilingCounter.Kind.PHASE, VISIT);
+
+    return new SquidAstVisitor<Grammar>() {
+
+      private long start;
+
+      @Override
+      public void visitFile(@Nullable AstNode astNode) {
+        start = System.nanoTime();
+      }
+
+      @Override
+      public void leaveFile(@Nullable AstNode astNode) {
+        counter.add(System.nanoTime() - start);
+      }
+
+    };
+  }
+
+  /**
+   * @return the visitor profiled by the given one, or the given visitor itself if it is not a profiling one
+   */
+  public static Object unwrap(Object visitor) {
+    return visitor instanceof ProfilingVisitor ? ((ProfilingVisitor) visitor).getDelegate() : visitor;
+  }
+
+  public void report() {
+    List<ProfilingCounter> totals = totals();
+    long scanNanos = 0;
+    for (ProfilingCounter counter : totals) {
+      if (counter.getKind() == ProfilingCounter.Kind.PHASE) {
+        scanNanos += counter.getNanos();
+      }
+    }
+
+    StringBuilder log = new StringBuilder("Time spent in each phase and visitor of the C# analyzer:");
+    StringBuilder csv = new StringBuilder("kind,name,invocations,time_ms,percent\n");
+    for (ProfilingCounter counter : totals) {
+      long millis = TimeUnit.NANOSECONDS.toMillis(counter.getNanos());
+      double percent = scanNanos == 0 ? 0 : 100.0 * counter.getNanos() / scanNanos;
+      String kind = counter.getKind().name().toLowerCase(Locale.ENGLISH);
+
+      log.append(String.format(Locale.ENGLISH, "%n%6.1f%% %10d ms %12d calls   %s %s", percent, millis, counter.getInvocations(), kind,
+        counter.getName()));
+      csv.append(String.format(Locale.ENGLISH, "%s,%s,%d,%.3f,%.2f%n", kind, counter.getName(), counter.getInvocations(),
+        counter.getNanos() / 1e6, percent));
+    }
+    LOG.info(log.toString());
+
+    try {
+      Files.createParentDirs(reportFile);
+      Files.write(csv, reportFile, Charsets.UTF_8);
+      LOG.info("C# analyzer profiling report written to " + reportFile.getAbsolutePath());
+    } catch (IOException e) {
+      LOG.warn("Unable to write the C# analyzer profiling report to " + reportFile.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Sums the counters of the different workers, and sorts them by decreasing time.
+   */
+  private synchronized List<ProfilingCounter> totals() {
+    Map<String, ProfilingCounter> totals = Maps.newLinkedHashMap();
+    for (ProfilingCounter counter : counters) {
+      String key = counter.getKind() + " " + counter.getName();
+      ProfilingCounter total = totals.get(key);
+      if (total == null) {
+        total = new ProfilingCounter(counter.getKind(), counter.getName());
+        totals.put(key, total);
+      }
+      total.add(counter);
+    }
+
+    List<ProfilingCounter> result = Lists.newArrayList(totals.values());
+    Collections.sort(result, new Comparator<ProfilingCounter>() {
+      @Override
+      public int compare(ProfilingCounter c1, ProfilingCounter c2) {
+        return c1.getNanos() < c2.getNanos() ? 1 : (c1.getNanos() == c2.getNanos() ? 0 : -1);
+      }
+    });
+    return result;
+  }
+
+}
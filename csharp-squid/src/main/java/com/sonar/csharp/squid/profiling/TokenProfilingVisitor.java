@@ -0,0 +1,43 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+/**
+ * Profiling visitor of a visitor which also visits tokens.
+ */
+class TokenProfilingVisitor extends ProfilingVisitor implements AstAndTokenVisitor {
+
+  TokenProfilingVisitor(SquidAstVisitor<Grammar> delegate, ProfilingCounter counter) {
+    super(delegate, counter);
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    long start = System.nanoTime();
+    ((AstAndTokenVisitor) delegate).visitToken(token);
+    counter.add(System.nanoTime() - start);
+  }
+
+}
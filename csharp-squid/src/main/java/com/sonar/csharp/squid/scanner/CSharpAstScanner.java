@@ -20,33 +20,43 @@
 package com.sonar.csharp.squid.scanner;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.sonar.csharp.squid.AncestorTracker;
+import com.sonar.csharp.squid.AncestorTrackerAwareVisitor;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.CharsetAwareVisitor;
+import com.sonar.csharp.squid.FileLinesAwareVisitor;
+import com.sonar.csharp.squid.ParallelAstScanner;
 import com.sonar.csharp.squid.ProgressAstScanner;
+import com.sonar.csharp.squid.SourceBuffer;
+import com.sonar.csharp.squid.SourceBufferAwareVisitor;
+import com.sonar.csharp.squid.SourceFileListener;
 import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
 import com.sonar.csharp.squid.metric.CSharpComplexityVisitor;
+import com.sonar.csharp.squid.metric.CSharpMetricsVisitor;
 import com.sonar.csharp.squid.metric.CSharpPublicApiVisitor;
-import com.sonar.csharp.squid.parser.CSharpGrammar;
-import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.csharp.squid.metric.FileLines;
+import com.sonar.csharp.squid.parser.CSharpParserPool;
+import com.sonar.csharp.squid.profiling.ScanProfiler;
 import com.sonar.csharp.squid.tree.CSharpMemberVisitor;
 import com.sonar.csharp.squid.tree.CSharpTypeVisitor;
 import com.sonar.sslr.api.Grammar;
-import com.sonar.sslr.impl.Parser;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.SquidAstVisitorContextImpl;
-import org.sonar.squidbridge.metrics.CommentsVisitor;
-import org.sonar.squidbridge.metrics.CounterVisitor;
-import org.sonar.squidbridge.metrics.LinesOfCodeVisitor;
-import org.sonar.squidbridge.metrics.LinesVisitor;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public final class CSharpAstScanner {
 
@@ -79,12 +89,57 @@ public final class CSharpAstScanner {
   }
 
   public static AstScanner<Grammar> create(CSharpConfiguration conf, SquidAstVisitor<Grammar>... visitors) {
+    return create(conf, Arrays.asList(visitors), null);
+  }
+
+  private static AstScanner<Grammar> create(CSharpConfiguration conf, List<SquidAstVisitor<Grammar>> visitors,
+    @Nullable SourceFileListener sourceFileListener) {
+    ScanProfiler profiler = newProfiler(conf);
+    ProgressAstScanner.Builder builder = new ProgressAstScanner.Builder(newContext());
+    builder.setScanProfiler(profiler);
+    builder.setSourceFileListener(sourceFileListener);
+    configure(builder, conf, visitors, profiler);
+    return builder.build();
+  }
+
+  /**
+   * Creates a scanner using {@link CSharpConfiguration#getThreads()} workers.
+   * The supplier is called once per worker and must return new instances of the same visitors, in the same order.
+   */
+  public static AstScanner<Grammar> create(CSharpConfiguration conf, Supplier<List<SquidAstVisitor<Grammar>>> visitorsSupplier) {
+    return create(conf, visitorsSupplier, null);
+  }
+
+  /**
+   * Same as {@link #create(CSharpConfiguration, Supplier)}, but the files are handed over to the given listener as soon as they are scanned,
+   * instead of being kept in the index of the scanner.
+   */
+  public static AstScanner<Grammar> create(CSharpConfiguration conf, Supplier<List<SquidAstVisitor<Grammar>>> visitorsSupplier,
+    @Nullable SourceFileListener sourceFileListener) {
+    if (conf.getThreads() == 1) {
+      return create(conf, visitorsSupplier.get(), sourceFileListener);
+    }
+
+    ScanProfiler profiler = newProfiler(conf);
+    ParallelAstScanner.Builder builder = new ParallelAstScanner.Builder(newContext());
+    builder.setScanProfiler(profiler);
+    builder.setSourceFileListener(sourceFileListener);
+    for (int i = 0; i < conf.getThreads(); i++) {
+      configure(builder.addWorker(newContext()), conf, visitorsSupplier.get(), profiler);
+    }
+    configureMetrics(builder);
+    return builder.build();
+  }
 
-    final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(new SourceProject("C# Project"));
-    final Parser<Grammar> parser = CSharpParser.create(conf);
+  private static ScanProfiler newProfiler(CSharpConfiguration conf) {
+    return conf.getProfilingReport() == null ? null : new ScanProfiler(conf.getProfilingReport());
+  }
 
-    AstScanner.Builder<Grammar> builder = new ProgressAstScanner.Builder(context).setBaseParser(parser);
+  private static SquidAstVisitorContextImpl<Grammar> newContext() {
+    return new SquidAstVisitorContextImpl<Grammar>(new SourceProject("C# Project"));
+  }
 
+  private static void configureMetrics(AstScanner.Builder<Grammar> builder) {
     /* Metrics */
     builder.withMetrics(CSharpMetric.values());
 
@@ -112,57 +167,56 @@ public final class CSharpAstScanner {
 
     /* Files */
     builder.setFilesMetric(CSharpMetric.FILES);
+  }
+
+  private static void configure(AstScanner.Builder<Grammar> builder, CSharpConfiguration conf, List<SquidAstVisitor<Grammar>> visitors,
+    @Nullable ScanProfiler profiler) {
+    CSharpParserPool parserPool = CSharpParserPool.get(conf);
+    SourceBuffer sourceBuffer = new SourceBuffer(conf.getCharset());
+    if (profiler == null) {
+      builder.setBaseParser(parserPool.newParser(sourceBuffer));
+    } else {
+      builder.setBaseParser(profiler.profile(parserPool.newParser(), CSharpLexer.create(conf), sourceBuffer));
+      builder.withSquidAstVisitor(profiler.newVisitPhaseVisitor());
+    }
+    configureMetrics(builder);
+
+    /* Enclosing nodes, tracked before any visitor looks for them */
+    AncestorTracker ancestorTracker = new AncestorTracker();
+    addVisitor(builder, profiler, ancestorTracker);
 
     /* Tree */
-    builder.withSquidAstVisitor(new CSharpTypeVisitor());
-    builder.withSquidAstVisitor(new CSharpMemberVisitor());
+    addVisitor(builder, profiler, new CSharpTypeVisitor());
+    addVisitor(builder, profiler, new CSharpMemberVisitor());
 
     /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<Grammar>(CSharpMetric.LINES));
-    builder.withSquidAstVisitor(new LinesOfCodeVisitor<Grammar>(CSharpMetric.LINES_OF_CODE));
-    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder()
-      .withCommentMetric(CSharpMetric.COMMENT_LINES)
-      .withNoSonar(true)
-      .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
-      .build());
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
-      .setMetricDef(CSharpMetric.STATEMENTS)
-      .subscribeTo(
-        CSharpGrammar.LABELED_STATEMENT,
-        CSharpGrammar.DECLARATION_STATEMENT,
-        CSharpGrammar.EXPRESSION_STATEMENT,
-        CSharpGrammar.SELECTION_STATEMENT,
-        CSharpGrammar.ITERATION_STATEMENT,
-        CSharpGrammar.JUMP_STATEMENT,
-        CSharpGrammar.TRY_STATEMENT,
-        CSharpGrammar.CHECKED_STATEMENT,
-        CSharpGrammar.UNCHECKED_STATEMENT,
-        CSharpGrammar.LOCK_STATEMENT,
-        CSharpGrammar.USING_STATEMENT,
-        CSharpGrammar.YIELD_STATEMENT)
-      .build());
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
-      .setMetricDef(CSharpMetric.ACCESSORS)
-      .subscribeTo(
-        CSharpGrammar.GET_ACCESSOR_DECLARATION,
-        CSharpGrammar.SET_ACCESSOR_DECLARATION,
-        CSharpGrammar.ADD_ACCESSOR_DECLARATION,
-        CSharpGrammar.REMOVE_ACCESSOR_DECLARATION)
-      .build());
+    FileLines fileLines = new FileLines();
+    addVisitor(builder, profiler, new CSharpMetricsVisitor(conf, fileLines));
 
     /* Visitors */
-    builder.withSquidAstVisitor(new CSharpComplexityVisitor());
-    builder.withSquidAstVisitor(new CSharpPublicApiVisitor());
+    addVisitor(builder, profiler, new CSharpComplexityVisitor(ancestorTracker));
+    addVisitor(builder, profiler, new CSharpPublicApiVisitor(ancestorTracker));
 
     /* External visitors (typically Check ones) */
     for (SquidAstVisitor<Grammar> visitor : visitors) {
       if (visitor instanceof CharsetAwareVisitor) {
         ((CharsetAwareVisitor) visitor).setCharset(conf.getCharset());
       }
-      builder.withSquidAstVisitor(visitor);
+      if (visitor instanceof SourceBufferAwareVisitor) {
+        ((SourceBufferAwareVisitor) visitor).setSourceBuffer(sourceBuffer);
+      }
+      if (visitor instanceof FileLinesAwareVisitor) {
+        ((FileLinesAwareVisitor) visitor).setFileLines(fileLines);
+      }
+      if (visitor instanceof AncestorTrackerAwareVisitor) {
+        ((AncestorTrackerAwareVisitor) visitor).setAncestorTracker(ancestorTracker);
+      }
+      addVisitor(builder, profiler, visitor);
     }
+  }
 
-    return builder.build();
+  private static void addVisitor(AstScanner.Builder<Grammar> builder, @Nullable ScanProfiler profiler, SquidAstVisitor<Grammar> visitor) {
+    builder.withSquidAstVisitor(profiler == null ? visitor : profiler.profile(visitor));
   }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AncestorTrackerTest {
+
+  private static final AstNodeType[] TRACKED_TYPES = {CSharpGrammar.CLASS_DECLARATION, CSharpGrammar.BLOCK, CSharpGrammar.EXPRESSION};
+
+  @Test
+  public void same_enclosing_nodes_as_ancestors() {
+    AncestorsCheck check = new AncestorsCheck();
+    CSharpAstScanner.create(new CSharpConfiguration(Charsets.UTF_8), check)
+        .scanFiles(FileUtils.listFiles(new File("src/test/resources/integration"), new String[] {"cs"}, true));
+
+    assertThat(check.nodes).isGreaterThan(10000);
+    assertThat(check.nodesInside).isGreaterThan(1000);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void untracked_type() {
+    new AncestorTracker().isInside(CSharpGrammar.BLOCK);
+  }
+
+  private static class AncestorsCheck extends SquidAstVisitor<Grammar> implements AncestorTrackerAwareVisitor {
+
+    private AncestorTracker ancestorTracker;
+    private int nodes;
+    private int nodesInside;
+
+    @Override
+    public void setAncestorTracker(AncestorTracker ancestorTracker) {
+      this.ancestorTracker = ancestorTracker;
+    }
+
+    @Override
+    public void init() {
+      ancestorTracker.track(TRACKED_TYPES);
+      subscribeTo(TRACKED_TYPES);
+      subscribeTo(CSharpGrammar.STATEMENT, CSharpGrammar.PRIMARY_EXPRESSION);
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      check(astNode);
+    }
+
+    @Override
+    public void leaveNode(AstNode astNode) {
+      check(astNode);
+    }
+
+    private void check(AstNode astNode) {
+      nodes++;
+      for (AstNodeType type : TRACKED_TYPES) {
+        AstNode expected = astNode.is(type) ? astNode : astNode.getFirstAncestor(type);
+        assertThat(ancestorTracker.getInnermost(type)).isSameAs(expected);
+        assertThat(ancestorTracker.isInside(type)).isEqualTo(expected != null);
+        if (expected != null) {
+          nodesInside++;
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.api.source.SourceMember;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByParent;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpSquidIndexTest {
+
+  private final Collection<File> files = FileUtils.listFiles(new File("src/test/resources/integration"), new String[] {"cs"}, true);
+
+  @Test
+  public void same_descendants_as_search_by_parent_and_type() {
+    for (int threads : new int[] {1, 3}) {
+      CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+      conf.setThreads(threads);
+      AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, new Supplier<List<SquidAstVisitor<Grammar>>>() {
+        @Override
+        public List<SquidAstVisitor<Grammar>> get() {
+          return Lists.newArrayList();
+        }
+      });
+      scanner.scanFiles(files);
+
+      Collection<SourceCode> sourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
+      assertThat(sourceFiles).hasSize(files.size());
+      for (SourceCode sourceFile : sourceFiles) {
+        Collection<SourceCode> members = scanner.getIndex().search(new QueryByParent(sourceFile), new QueryByType(SourceMember.class));
+        assertThat(CSharpSquidIndex.searchDescendants(sourceFile, SourceMember.class)).hasSize(members.size()).containsOnly(members.toArray());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.checks.SquidCheck;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelAstScannerTest {
+
+  private final Collection<File> files = FileUtils.listFiles(new File("src/test/resources/integration"), new String[] {"cs"}, true);
+
+  @Test
+  public void same_result_as_sequential_scan() {
+    ClassesCheckSupplier sequentialSupplier = new ClassesCheckSupplier();
+    AstScanner<Grammar> sequential = scan(1, sequentialSupplier);
+
+    ClassesCheckSupplier parallelSupplier = new ClassesCheckSupplier();
+    AstScanner<Grammar> parallel = scan(3, parallelSupplier);
+
+    assertThat(sequential).isInstanceOf(ProgressAstScanner.class);
+    assertThat(parallel).isInstanceOf(ParallelAstScanner.class);
+    assertThat(parallelSupplier.checks).hasSize(3);
+
+    Map<String, SourceCode> expected = index(sequential);
+    Map<String, SourceCode> actual = index(parallel);
+    assertThat(actual.keySet()).isEqualTo(expected.keySet());
+    assertThat(actual.size()).isGreaterThan(files.size());
+
+    for (SourceCode expectedSourceCode : expected.values()) {
+      SourceCode actualSourceCode = actual.get(expectedSourceCode.getKey());
+      assertThat(actualSourceCode.getClass()).isEqualTo(expectedSourceCode.getClass());
+      for (CSharpMetric metric : CSharpMetric.values()) {
+        assertThat(actualSourceCode.getDouble(metric)).as(expectedSourceCode.getKey() + " " + metric).isEqualTo(expectedSourceCode.getDouble(metric));
+      }
+
+      assertThat(actualSourceCode.getCheckMessages().size()).isEqualTo(expectedSourceCode.getCheckMessages().size());
+      for (CheckMessage message : actualSourceCode.getCheckMessages()) {
+        assertThat(message.getCheck()).isSameAs(parallelSupplier.checks.get(0));
+      }
+    }
+
+    SourceProject project = (SourceProject) parallel.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    assertThat(project.getInt(CSharpMetric.FILES)).isEqualTo(files.size());
+  }
+
+  @Test
+  public void streamed_files() {
+    Map<String, SourceCode> expected = index(scan(1, new ClassesCheckSupplier()));
+
+    for (int threads : new int[] {1, 3}) {
+      ClassesCheckSupplier supplier = new ClassesCheckSupplier();
+      SourceFilesCollector collector = new SourceFilesCollector();
+      AstScanner<Grammar> scanner = scan(threads, supplier, collector);
+
+      assertThat(scanner.getIndex().search(new QueryByType(SourceFile.class))).isEmpty();
+      assertThat(collector.sourceFiles).hasSize(files.size());
+
+      for (SourceFile sourceFile : collector.sourceFiles) {
+        SourceCode expectedSourceFile = expected.get(sourceFile.getKey());
+        for (CSharpMetric metric : CSharpMetric.values()) {
+          assertThat(sourceFile.getDouble(metric)).as(sourceFile.getKey() + " " + metric).isEqualTo(expectedSourceFile.getDouble(metric));
+        }
+
+        assertThat(sourceFile.getCheckMessages().size()).isEqualTo(expectedSourceFile.getCheckMessages().size());
+        for (CheckMessage message : sourceFile.getCheckMessages()) {
+          assertThat(message.getCheck()).isSameAs(supplier.checks.get(0));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void files_handed_over_from_scanning_thread() {
+    final Thread scanningThread = Thread.currentThread();
+    final AtomicBoolean handingOver = new AtomicBoolean();
+    SourceFilesCollector collector = new SourceFilesCollector() {
+      @Override
+      public void sourceFileScanned(SourceFile sourceFile) {
+        assertThat(Thread.currentThread()).isSameAs(scanningThread);
+        assertThat(handingOver.getAndSet(true)).isFalse();
+        try {
+          // Gives the workers the time to queue the next files
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        super.sourceFileScanned(sourceFile);
+        handingOver.set(false);
+      }
+    };
+
+    scan(3, new ClassesCheckSupplier(), collector);
+    assertThat(collector.sourceFiles).hasSize(files.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void threads_must_be_positive() {
+    new CSharpConfiguration(Charsets.UTF_8).setThreads(0);
+  }
+
+  private AstScanner<Grammar> scan(int threads, Supplier<List<SquidAstVisitor<Grammar>>> supplier) {
+    return scan(threads, supplier, null);
+  }
+
+  private AstScanner<Grammar> scan(int threads, Supplier<List<SquidAstVisitor<Grammar>>> supplier, SourceFileListener sourceFileListener) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setThreads(threads);
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, supplier, sourceFileListener);
+    scanner.scanFiles(files);
+    return scanner;
+  }
+
+  private static Map<String, SourceCode> index(AstScanner<Grammar> scanner) {
+    Map<String, SourceCode> result = Maps.newHashMap();
+    for (SourceCode sourceCode : scanner.getIndex().search()) {
+      result.put(sourceCode.getKey(), sourceCode);
+    }
+    return result;
+  }
+
+  private static class ClassesCheckSupplier implements Supplier<List<SquidAstVisitor<Grammar>>> {
+
+    private final List<ClassesCheck> checks = Lists.newArrayList();
+
+    @Override
+    public List<SquidAstVisitor<Grammar>> get() {
+      ClassesCheck check = new ClassesCheck();
+      checks.add(check);
+      return Lists.<SquidAstVisitor<Grammar>>newArrayList(check);
+    }
+
+  }
+
+  private static class SourceFilesCollector implements SourceFileListener {
+
+    private final List<SourceFile> sourceFiles = Lists.newArrayList();
+
+    @Override
+    public void sourceFileScanned(SourceFile sourceFile) {
+      sourceFiles.add(sourceFile);
+    }
+
+  }
+
+  private static class ClassesCheck extends SquidCheck<Grammar> {
+
+    @Override
+    public void init() {
+      subscribeTo(CSharpGrammar.CLASS_DECLARATION);
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      getContext().createLineViolation(this, "Class", astNode);
+    }
+
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SourceBufferTest {
+
+  private final SourceBuffer sourceBuffer = new SourceBuffer(Charsets.UTF_8);
+
+  @Test
+  public void lines() throws IOException {
+    read("first\r\nsecond\rthird\n\nfifth\n");
+    assertThat(sourceBuffer.getLineCount()).isEqualTo(5);
+    assertThat(sourceBuffer.getLineStart(1)).isEqualTo(0);
+    assertThat(sourceBuffer.getLineLength(1)).isEqualTo(5);
+    assertThat(sourceBuffer.getLineStart(2)).isEqualTo(7);
+    assertThat(sourceBuffer.getLineEnd(2)).isEqualTo(13);
+    assertThat(sourceBuffer.getLineLength(4)).isEqualTo(0);
+    assertThat(sourceBuffer.getLineLength(5)).isEqualTo(5);
+
+    assertThat(sourceBuffer.getLine(0)).isEqualTo(1);
+    assertThat(sourceBuffer.getLine(5)).isEqualTo(1);
+    assertThat(sourceBuffer.getLine(7)).isEqualTo(2);
+    assertThat(sourceBuffer.getLine(19)).isEqualTo(3);
+    assertThat(sourceBuffer.getLine(20)).isEqualTo(4);
+    assertThat(sourceBuffer.getLine(21)).isEqualTo(5);
+  }
+
+  @Test
+  public void empty_file() throws IOException {
+    read("");
+    assertThat(sourceBuffer.getLineCount()).isEqualTo(0);
+    assertThat(sourceBuffer.getContents()).isEmpty();
+  }
+
+  @Test
+  public void last_line_without_terminator() throws IOException {
+    read("a\nbc");
+    assertThat(sourceBuffer.getLineCount()).isEqualTo(2);
+    assertThat(sourceBuffer.getLineLength(2)).isEqualTo(2);
+    assertThat(sourceBuffer.getLine(3)).isEqualTo(2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void line_out_of_range() throws IOException {
+    read("a\n");
+    sourceBuffer.getLineStart(2);
+  }
+
+  @Test
+  public void unreadable_file() throws IOException {
+    read("a");
+    try {
+      sourceBuffer.read(new File("target/SourceBufferTest/unknown.cs"));
+    } catch (IOException e) {
+      // expected
+    }
+    assertThat(sourceBuffer.getFile()).isNull();
+    assertThat(sourceBuffer.getLineCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void same_lines_as_files_read_lines() throws IOException {
+    Collection<File> files = FileUtils.listFiles(new File("src/test/resources"), new String[] {"cs"}, true);
+    assertThat(files.size()).isGreaterThan(50);
+
+    for (File file : files) {
+      String contents = sourceBuffer.read(file);
+      assertThat(contents).isEqualTo(Files.toString(file, Charsets.UTF_8));
+      assertThat(sourceBuffer.getFile()).isEqualTo(file);
+
+      List<String> lines = Files.readLines(file, Charsets.UTF_8);
+      assertThat(sourceBuffer.getLineCount()).as(file.getPath()).isEqualTo(lines.size());
+      for (int i = 0; i < lines.size(); i++) {
+        int line = i + 1;
+        assertThat(contents.substring(sourceBuffer.getLineStart(line), sourceBuffer.getLineEnd(line))).isEqualTo(lines.get(i));
+        if (!lines.get(i).isEmpty()) {
+          assertThat(sourceBuffer.getLine(sourceBuffer.getLineStart(line))).isEqualTo(line);
+          assertThat(sourceBuffer.getLine(sourceBuffer.getLineEnd(line) - 1)).isEqualTo(line);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void same_contents_as_reader() throws IOException {
+    File file = new File("target/SourceBufferTest/encoded.cs");
+    file.getParentFile().mkdirs();
+    byte[][] sources = {
+      {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a', '\n', (byte) 0xC3, (byte) 0xA9},
+      {(byte) 0xFE, (byte) 0xFF, 0, 'a', 0, '\n'},
+      {(byte) 0xFF, (byte) 0xFE, 'a', 0, '\n', 0},
+      {'a', (byte) 0xC3, '(', (byte) 0xFF, 'b', (byte) 0xE2, (byte) 0x82},
+      {}};
+    Charset[] charsets = {Charsets.UTF_8, Charsets.UTF_16, Charsets.UTF_16LE, Charsets.ISO_8859_1, Charset.forName("windows-1252")};
+
+    for (Charset charset : charsets) {
+      SourceBuffer buffer = new SourceBuffer(charset);
+      for (byte[] source : sources) {
+        Files.write(source, file);
+        assertThat(buffer.read(file)).as(charset + " " + Arrays.toString(source)).isEqualTo(Files.toString(file, charset));
+      }
+    }
+  }
+
+  @Test
+  public void large_files() throws IOException {
+    File file = new File("target/SourceBufferTest/large.cs");
+    file.getParentFile().mkdirs();
+    StringBuilder sb = new StringBuilder("\ufeff");
+    while (sb.length() < 100000) {
+      sb.append("int \u00e9t\u00e9 = ").append(sb.length()).append(";\r\n");
+    }
+    String contents = sb.toString();
+    Files.write(contents, file, Charsets.UTF_8);
+
+    // Larger than the buffers
+    assertThat(sourceBuffer.read(file)).isEqualTo(contents);
+    assertThat(sourceBuffer.getLineCount()).isEqualTo(Files.readLines(file, Charsets.UTF_8).size());
+
+    // Smaller file after a larger one
+    read("class A {}");
+    assertThat(sourceBuffer.read(file)).isEqualTo(contents);
+
+    SourceBuffer mappingSourceBuffer = new SourceBuffer(Charsets.UTF_8, 50000);
+    assertThat(mappingSourceBuffer.read(file)).isEqualTo(contents);
+    assertThat(mappingSourceBuffer.getLineCount()).isEqualTo(sourceBuffer.getLineCount());
+  }
+
+  private void read(String contents) throws IOException {
+    File file = new File("target/SourceBufferTest/file.cs");
+    file.getParentFile().mkdirs();
+    Files.write(contents, file, Charsets.UTF_8);
+    assertThat(sourceBuffer.read(file)).isEqualTo(contents);
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenSpanSetTest {
+
+  @Test
+  public void token_spans() {
+    AstNode node = node("System.Collections.Generic.List<int>");
+
+    assertThat(TokenSpans.toString(node)).isEqualTo("System.Collections.Generic.List<int>");
+    assertThat(TokenSpans.hashCode(node)).isEqualTo("System.Collections.Generic.List<int>".hashCode());
+    assertThat(TokenSpans.hashCode(new StringBuilder("List<int>"))).isEqualTo("List<int>".hashCode());
+    assertThat(TokenSpans.contentEquals(node, "System.Collections.Generic.List<int>")).isTrue();
+    assertThat(TokenSpans.contentEquals(node, "System.Collections.Generic.List<int")).isFalse();
+    assertThat(TokenSpans.contentEquals(node, "System.Collections.Generic.List<int>>")).isFalse();
+    assertThat(TokenSpans.contentEquals(node, "System.Collections.Generic.List<long>")).isFalse();
+  }
+
+  @Test
+  public void set_of_nodes_and_texts() {
+    TokenSpanSet set = new TokenSpanSet();
+    assertThat(set.isEmpty()).isTrue();
+
+    assertThat(set.add(node("a.b"))).isTrue();
+    assertThat(set.add(node("a . b"))).isFalse();
+    assertThat(set.add("a.b")).isFalse();
+    assertThat(set.add("c")).isTrue();
+    assertThat(set.size()).isEqualTo(2);
+
+    assertThat(set.contains(node("a.b"))).isTrue();
+    assertThat(set.contains(node("a.c"))).isFalse();
+    assertThat(set.contains(new StringBuilder("c"))).isTrue();
+
+    assertThat(set.remove("a.b")).isTrue();
+    assertThat(set.remove("a.b")).isFalse();
+    assertThat(set.contains(node("a.b"))).isFalse();
+    assertThat(set.size()).isEqualTo(1);
+
+    set.clear();
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.contains("c")).isFalse();
+  }
+
+  @Test
+  public void same_as_hash_set() {
+    Random random = new Random(42);
+    TokenSpanSet set = new TokenSpanSet();
+    Set<String> expected = Sets.newHashSet();
+
+    for (int i = 0; i < 100000; i++) {
+      // "Aa" and "BB" have the same hash code, as all the texts made of them and of the same length
+      StringBuilder sb = new StringBuilder();
+      for (int j = random.nextInt(6); j >= 0; j--) {
+        sb.append(random.nextBoolean() ? "Aa" : "BB");
+      }
+      String text = sb.toString();
+
+      if (random.nextInt(3) == 0) {
+        assertThat(set.remove(text)).isEqualTo(expected.remove(text));
+      } else {
+        assertThat(set.add(text)).isEqualTo(expected.add(text));
+      }
+      assertThat(set.size()).isEqualTo(expected.size());
+    }
+
+    for (String text : expected) {
+      assertThat(set.contains(text)).isTrue();
+    }
+  }
+
+  /**
+   * @return a node whose tokens are the ones of the given code, nested in an intermediate node and a node without token
+   */
+  private static AstNode node(String code) {
+    List<Token> tokens = CSharpLexer.create(new CSharpConfiguration()).lex(code);
+    AstNode result = new AstNode(CSharpGrammar.TYPE, "TYPE", tokens.get(0));
+    AstNode child = new AstNode(CSharpGrammar.TYPE_NAME, "TYPE_NAME", tokens.get(0));
+    result.addChild(child);
+    result.addChild(new AstNode(CSharpGrammar.TYPE_ARGUMENT_LIST, "TYPE_ARGUMENT_LIST", null));
+    for (Token token : tokens) {
+      if (!token.getType().equals(GenericTokenType.EOF)) {
+        child.addChild(new AstNode(token));
+      }
+    }
+    return result;
+  }
+
+}
@@ -33,8 +33,6 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Class used to test parsing Log4Net and NUnit C#-based libraries.
@@ -44,24 +42,9 @@ public class CSharpPreIntegrationTest {
 
   private File cSharpFile = null;
   private final Parser<Grammar> parser = CSharpParser.create(new CSharpConfiguration(Charset.forName("UTF-8")));
-  private final Set<String> filesToIgnore = new HashSet<String>();
 
   public CSharpPreIntegrationTest(File f) {
     this.cSharpFile = f;
-    populateFilesToIgnoreSet();
-  }
-
-  private void populateFilesToIgnoreSet() {
-    // XXX Files ignored because they have preprocessing instructions that we do not handle yet
-    filesToIgnore.add("PropertiesDictionary.cs");
-    filesToIgnore.add("ReadOnlyPropertiesDictionary.cs");
-    filesToIgnore.add("TestLoaderWatcherTests.cs");
-    filesToIgnore.add("AssemblyWatcher.cs");
-    filesToIgnore.add("DomainAgent.cs");
-    filesToIgnore.add("RemoteTestRunner.cs");
-    filesToIgnore.add("TestThread.cs");
-    filesToIgnore.add("PNUnitTestRunner.cs");
-    filesToIgnore.add("PairwiseTests.cs");
   }
 
   @Parameterized.Parameters
@@ -73,10 +56,6 @@ public class CSharpPreIntegrationTest {
 
   @Test
   public void parseCSharpSource() throws Exception {
-    if (filesToIgnore.contains(cSharpFile.getName())) {
-      System.out.println("... Ignoring \"" + cSharpFile.getName() + "\" for the moment...");
-      return;
-    }
     try {
       parser.parse(cSharpFile);
     } catch (Exception e) {
@@ -0,0 +1,124 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpChannelTest {
+
+  private final Lexer regexpLexer = CSharpLexer.create(new CSharpConfiguration(Charsets.UTF_8));
+  private final Lexer stateMachineLexer = createStateMachineLexer();
+
+  @Test
+  public void same_tokens_as_regexp_lexer_on_test_files() throws Exception {
+    Collection<File> files = FileUtils.listFiles(new File("src/test/resources"), new String[] {"cs"}, true);
+    assertThat(files.size()).isGreaterThan(50);
+
+    for (File file : files) {
+      assertSameTokens(file.getPath(), regexpLexer.lex(file), stateMachineLexer.lex(file));
+    }
+  }
+
+  @Test
+  public void same_tokens_as_regexp_lexer_on_edge_cases() {
+    List<String> sources = ImmutableList.of(
+        "/* unclosed comment",
+        "/**/ /*/ */ /* * / */ // comment\r\n//\n// end",
+        "\"unclosed string",
+        "\"escaped \\\" quote\" \"line \\\n break\" \"\\ \" \"\\",
+        "@\"verbatim \"\" string\n on two lines\" @\"unclosed",
+        "'a' '\\'' '' 'ab' '\\\\' '\n'",
+        "1 1.5 .5 1. 1.e5 1e5 1E+5 1e-5 1e+ 1e 1.5e5f 1d 1m 1F 1.5M 00.5 1..2",
+        "0x 0x1F 0X1fUL 0x1l 0x1Lu 00x1 1u 1U 1ul 1UL 1lu 1L 1Lx 10uu",
+        "abstract @abstract @ @1 _ _1 a1 class classes klass stackalloc stackallocs interface1 Class",
+        "éléphant \u0e01\u0e34 a\u0301 a\u200bb \u00b2 x\u0660 \u203fa a\u203f \ud801\udc00x x\ud801\udc00 \ud801x",
+        "a+++b a>>=b a<<=b a->b a??b a=>b a!=b a::b !~%^&*()-+={}[]|\\:;\"'<>,.?/",
+        "#region name\r\n  # if DEBUG\nx = 1;\n#endregion",
+        "\ufeffclass A {}\t\u000b\f\r\n\u00a0 \u2028 $ ` \u0000 ~");
+
+    for (String source : sources) {
+      assertSameTokens(source, regexpLexer.lex(source), stateMachineLexer.lex(source));
+    }
+  }
+
+  @Test
+  public void shared_values() {
+    List<Token> tokens = stateMachineLexer.lex("foo = foo + bar; foo++; @foo = bar;");
+    assertThat(tokens.get(0).getValue()).isEqualTo("foo");
+    assertThat(tokens.get(2).getValue()).isSameAs(tokens.get(0).getValue());
+    assertThat(tokens.get(2).getOriginalValue()).isSameAs(tokens.get(0).getValue());
+    assertThat(tokens.get(4).getValue()).isSameAs(tokens.get(11).getValue());
+    assertThat(tokens.get(6).getValue()).isSameAs(tokens.get(0).getValue());
+    assertThat(tokens.get(9).getValue()).isEqualTo("@foo");
+
+    // Identifiers are shared across files
+    assertThat(stateMachineLexer.lex("foo").get(0).getValue()).isSameAs(tokens.get(0).getValue());
+
+    // Keywords and punctuators use the values of their types
+    Token keyword = stateMachineLexer.lex("class").get(0);
+    assertThat(keyword.getValue()).isSameAs(keyword.getType().getValue());
+    assertThat(tokens.get(1).getValue()).isSameAs(tokens.get(1).getType().getValue());
+  }
+
+  private static Lexer createStateMachineLexer() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setStateMachineLexer(true);
+    return CSharpLexer.create(conf);
+  }
+
+  private static void assertSameTokens(String source, List<Token> expected, List<Token> actual) {
+    assertThat(actual.size()).as(source).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameToken(source, expected.get(i), actual.get(i));
+
+      List<Trivia> expectedTrivia = expected.get(i).getTrivia();
+      List<Trivia> actualTrivia = actual.get(i).getTrivia();
+      assertThat(actualTrivia.size()).as(source).isEqualTo(expectedTrivia.size());
+      for (int j = 0; j < expectedTrivia.size(); j++) {
+        assertThat(actualTrivia.get(j).isComment()).isEqualTo(expectedTrivia.get(j).isComment());
+        assertSameToken(source, expectedTrivia.get(j).getToken(), actualTrivia.get(j).getToken());
+      }
+    }
+  }
+
+  private static void assertSameToken(String source, Token expected, Token actual) {
+    String message = source + " at " + expected.getLine() + ":" + expected.getColumn();
+    assertThat(actual.getType()).as(message).isEqualTo(expected.getType());
+    assertThat(actual.getValue()).as(message).isEqualTo(expected.getValue());
+    assertThat(actual.getOriginalValue()).as(message).isEqualTo(expected.getOriginalValue());
+    assertThat(actual.getLine()).as(message).isEqualTo(expected.getLine());
+    assertThat(actual.getColumn()).as(message).isEqualTo(expected.getColumn());
+    assertThat(actual.getURI()).as(message).isEqualTo(expected.getURI());
+  }
+
+}
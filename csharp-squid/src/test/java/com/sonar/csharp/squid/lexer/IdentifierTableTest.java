@@ -0,0 +1,63 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import org.junit.Test;
+import org.sonar.sslr.channel.CodeReader;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IdentifierTableTest {
+
+  private final IdentifierTable table = new IdentifierTable();
+
+  @Test
+  public void same_string_for_same_characters() {
+    String foo = table.get(new CodeReader("foo bar"), 3);
+    assertThat(foo).isEqualTo("foo");
+    assertThat(table.get(new CodeReader("foo"), 3)).isSameAs(foo);
+    assertThat(table.get(new CodeReader("fooo"), 4)).isEqualTo("fooo");
+    assertThat(table.get(new CodeReader("fo"), 2)).isEqualTo("fo");
+    assertThat(table.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void same_hash_code() {
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+    assertThat(table.get(new CodeReader("Aa"), 2)).isEqualTo("Aa");
+    assertThat(table.get(new CodeReader("BB"), 2)).isEqualTo("BB");
+    assertThat(table.get(new CodeReader("Aa"), 2)).isEqualTo("Aa");
+  }
+
+  @Test
+  public void bounded() {
+    String first = table.get(new CodeReader("id0"), 3);
+    for (int i = 1; i < IdentifierTable.MAX_SIZE + 10; i++) {
+      String id = "id" + i;
+      assertThat(table.get(new CodeReader(id), id.length())).isEqualTo(id);
+    }
+    assertThat(table.size()).isEqualTo(IdentifierTable.MAX_SIZE);
+    assertThat(table.get(new CodeReader("id0"), 3)).isSameAs(first);
+
+    String notShared = "id" + IdentifierTable.MAX_SIZE;
+    assertThat(table.get(new CodeReader(notShared), notShared.length())).isNotSameAs(table.get(new CodeReader(notShared), notShared.length()));
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ConditionalCompilationPreprocessorTest {
+
+  private final Lexer lexer = lexer();
+
+  @Test
+  public void if_else() {
+    assertThat(values("#if DEBUG\n a \n#else\n b \n#endif\n c")).isEqualTo("b c EOF");
+    assertThat(values("#if RELEASE\n a \n#else\n b \n#endif\n c")).isEqualTo("a c EOF");
+    assertThat(values("#if DEBUG\n a \n#elif RELEASE\n b \n#elif RELEASE\n c \n#else\n d \n#endif")).isEqualTo("b EOF");
+    assertThat(values("#if DEBUG\n a \n#elif DEBUG\n b \n#else\n c \n#endif")).isEqualTo("c EOF");
+    assertThat(values("#if RELEASE // comment\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("  #  if RELEASE\n a \n  #  endif")).isEqualTo("a EOF");
+  }
+
+  @Test
+  public void symbols_of_debug_configuration_defined_by_default() {
+    Lexer defaultLexer = CSharpLexer.create(new CSharpConfiguration(Charsets.UTF_8));
+    List<String> values = Lists.newArrayList();
+    for (Token token : defaultLexer.lex("#if DEBUG && TRACE\n a \n#endif\n#if RELEASE\n b \n#endif")) {
+      values.add(token.getValue());
+    }
+    assertThat(values).containsExactly("a", "EOF");
+  }
+
+  @Test
+  public void nested_sections() {
+    assertThat(values("#if DEBUG\n #if RELEASE\n a \n #else\n b \n #endif\n#else\n c \n#endif")).isEqualTo("c EOF");
+    assertThat(values("#if RELEASE\n #if DEBUG\n a \n #else\n b \n #endif\n#else\n c \n#endif")).isEqualTo("b EOF");
+    assertThat(values("#if DEBUG\n #if RELEASE\n a \n #endif\n b \n#elif RELEASE\n c \n#endif")).isEqualTo("c EOF");
+  }
+
+  @Test
+  public void define_and_undef() {
+    assertThat(values("#define DEBUG\n#if DEBUG\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#undef RELEASE\n#if RELEASE\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if DEBUG\n#define OTHER\n#endif\n#if OTHER\n a \n#endif")).isEqualTo("EOF");
+
+    // Symbols defined by a file do not leak into the next one
+    assertThat(values("#define DEBUG")).isEqualTo("EOF");
+    assertThat(values("#if DEBUG\n a \n#endif")).isEqualTo("EOF");
+  }
+
+  @Test
+  public void conditions() {
+    assertThat(values("#if true\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if false\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if !DEBUG\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if RELEASE && TRACE\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if RELEASE && DEBUG\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if DEBUG || TRACE\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if DEBUG || RELEASE && !TRACE\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if (DEBUG || RELEASE) && !(TRACE && DEBUG)\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if DEBUG == false\n a \n#endif")).isEqualTo("a EOF");
+    assertThat(values("#if RELEASE != TRACE\n a \n#endif")).isEqualTo("EOF");
+  }
+
+  @Test
+  public void invalid_conditions_are_false() {
+    assertThat(values("#if\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if RELEASE &&\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if (RELEASE\n a \n#endif")).isEqualTo("EOF");
+    assertThat(values("#if RELEASE)\n a \n#endif")).isEqualTo("EOF");
+  }
+
+  @Test
+  public void unbalanced_directives() {
+    assertThat(values("a\n#endif\n b \n#else\n c")).isEqualTo("a b c EOF");
+    assertThat(values("#if DEBUG\n a")).isEqualTo("EOF");
+    assertThat(values("#if RELEASE\n a")).isEqualTo("a EOF");
+  }
+
+  @Test
+  public void inactive_sections_are_skipped_text() {
+    List<Token> tokens = lexer.lex("#if DEBUG\n a // comment\n#endif\n b");
+    assertThat(tokens).hasSize(2);
+
+    List<String> trivia = Lists.newArrayList();
+    for (Trivia t : tokens.get(0).getTrivia()) {
+      trivia.add((t.isComment() ? "comment:" : "skipped:") + t.getToken().getValue() + "@" + t.getToken().getLine());
+    }
+    assertThat(trivia).containsOnly("skipped:#if DEBUG@1", "skipped:a@2", "comment:// comment@2", "skipped:#endif@3");
+  }
+
+  private String values(String source) {
+    List<String> values = Lists.newArrayList();
+    for (Token token : lexer.lex(source)) {
+      values.add(token.getValue());
+    }
+    return Joiner.on(' ').join(values);
+  }
+
+  private static Lexer lexer() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setDefinedSymbols(ImmutableSet.of("RELEASE", "TRACE"));
+    return CSharpLexer.create(conf);
+  }
+
+}
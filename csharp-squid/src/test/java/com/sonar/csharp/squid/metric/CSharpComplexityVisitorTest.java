@@ -64,6 +64,16 @@ public class CSharpComplexityVisitorTest {
     assertThat(project.getInt(CSharpMetric.COMPLEXITY), is(6));
   }
 
+  @Test
+  public void testWithoutAncestorTracker() {
+    // Same complexity as the visitor of the scanner, which uses a tracker
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(new CSharpConfiguration(Charset.forName("UTF-8")), new CSharpComplexityVisitor());
+    scanner.scanFile(readFile("/metric/Money.cs"));
+    SourceProject project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+
+    assertThat(project.getInt(CSharpMetric.COMPLEXITY), is(2 * 72));
+  }
+
   protected File readFile(String path) {
     return FileUtils.toFile(getClass().getResource(path));
   }
@@ -44,15 +44,7 @@ public class CSharpFileLinesVisitorTest {
 
   @Test
   public void test() {
-    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
-    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
-    when(fileLinesContextFactory.createFor(Mockito.any(Resource.class))).thenReturn(fileLinesContext);
-
-    CSharpFileLinesVisitor visitor = new CSharpFileLinesVisitor(mock(FileProvider.class), fileLinesContextFactory);
-
-    AstScanner<Grammar> scanner = CSharpAstScanner.create(new CSharpConfiguration(Charset.forName("UTF-8")), visitor);
-    scanner.scanFile(new File("src/test/resources/metric/CSharpFileLinesVisitor.cs"));
-    scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    FileLinesContext fileLinesContext = scan("CSharpFileLinesVisitor.cs");
 
     verify(fileLinesContext).setIntValue(CoreMetrics.NCLOC_DATA_KEY, 1, 0);
     verify(fileLinesContext).setIntValue(CoreMetrics.NCLOC_DATA_KEY, 2, 1);
@@ -103,4 +95,31 @@ public class CSharpFileLinesVisitorTest {
     verify(fileLinesContext, times(22)).setIntValue(Mockito.eq(CoreMetrics.COMMENT_LINES_DATA_KEY), Mockito.anyInt(), Mockito.anyInt());
   }
 
+  @Test
+  public void line_breaks() {
+    FileLinesContext fileLinesContext = scan("CSharpFileLinesVisitor-lineBreaks.cs");
+
+    int[] linesOfCode = {0, 0, 1, 1, 0, 1, 0, 1, 1, 1, 0};
+    int[] commentLines = {1, 1, 0, 0, 1, 1, 1, 0, 0, 0, 0};
+    for (int line = 1; line <= linesOfCode.length; line++) {
+      verify(fileLinesContext).setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode[line - 1]);
+      verify(fileLinesContext).setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, commentLines[line - 1]);
+    }
+    verify(fileLinesContext, times(linesOfCode.length)).setIntValue(Mockito.eq(CoreMetrics.NCLOC_DATA_KEY), Mockito.anyInt(), Mockito.anyInt());
+    verify(fileLinesContext, times(commentLines.length)).setIntValue(Mockito.eq(CoreMetrics.COMMENT_LINES_DATA_KEY), Mockito.anyInt(), Mockito.anyInt());
+  }
+
+  private static FileLinesContext scan(String fileName) {
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(Mockito.any(Resource.class))).thenReturn(fileLinesContext);
+
+    CSharpFileLinesVisitor visitor = new CSharpFileLinesVisitor(mock(FileProvider.class), fileLinesContextFactory);
+
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(new CSharpConfiguration(Charset.forName("UTF-8")), visitor);
+    scanner.scanFile(new File("src/test/resources/metric/" + fileName));
+    scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    return fileLinesContext;
+  }
+
 }
@@ -0,0 +1,163 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.metric;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.measures.CalculatedMetricFormula;
+import org.sonar.squidbridge.measures.MetricDef;
+import org.sonar.squidbridge.metrics.CommentsVisitor;
+import org.sonar.squidbridge.metrics.CounterVisitor;
+import org.sonar.squidbridge.metrics.LinesOfCodeVisitor;
+import org.sonar.squidbridge.metrics.LinesVisitor;
+
+import java.io.File;
+import java.util.Collection;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpMetricsVisitorTest {
+
+  @Test
+  public void same_metrics_as_squid_bridge_visitors() {
+    for (boolean ignoreHeaderComments : new boolean[] {true, false}) {
+      CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+      conf.setIgnoreHeaderComments(ignoreHeaderComments);
+      AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, squidBridgeVisitors(ignoreHeaderComments));
+      Collection<File> files = FileUtils.listFiles(new File("src/test/resources"), new String[] {"cs"}, true);
+      scanner.scanFiles(files);
+
+      Collection<SourceCode> sourceCodes = scanner.getIndex().search();
+      assertThat(sourceCodes.size()).isGreaterThan(files.size());
+      for (SourceCode sourceCode : sourceCodes) {
+        for (ReferenceMetric metric : ReferenceMetric.values()) {
+          assertThat(sourceCode.getDouble(metric.metric)).as(sourceCode.getKey() + " " + metric.metric).isEqualTo(aggregated(sourceCode, metric));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void line_breaks() {
+    assertThat(CSharpMetricsVisitor.lineBreaks("")).isEqualTo(0);
+    assertThat(CSharpMetricsVisitor.lineBreaks("a")).isEqualTo(0);
+    assertThat(CSharpMetricsVisitor.lineBreaks("a\nb\rc\r\nd")).isEqualTo(3);
+    assertThat(CSharpMetricsVisitor.lineBreaks("\n\n\r\r\r\n")).isEqualTo(5);
+  }
+
+  private static SquidAstVisitor<Grammar>[] squidBridgeVisitors(boolean ignoreHeaderComments) {
+    return new SquidAstVisitor[] {
+      new LinesVisitor<Grammar>(ReferenceMetric.LINES),
+      new LinesOfCodeVisitor<Grammar>(ReferenceMetric.LINES_OF_CODE),
+      CommentsVisitor.<Grammar>builder()
+        .withCommentMetric(ReferenceMetric.COMMENT_LINES)
+        .withNoSonar(true)
+        .withIgnoreHeaderComment(ignoreHeaderComments)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(ReferenceMetric.STATEMENTS)
+        .subscribeTo(
+          CSharpGrammar.LABELED_STATEMENT,
+          CSharpGrammar.DECLARATION_STATEMENT,
+          CSharpGrammar.EXPRESSION_STATEMENT,
+          CSharpGrammar.SELECTION_STATEMENT,
+          CSharpGrammar.ITERATION_STATEMENT,
+          CSharpGrammar.JUMP_STATEMENT,
+          CSharpGrammar.TRY_STATEMENT,
+          CSharpGrammar.CHECKED_STATEMENT,
+          CSharpGrammar.UNCHECKED_STATEMENT,
+          CSharpGrammar.LOCK_STATEMENT,
+          CSharpGrammar.USING_STATEMENT,
+          CSharpGrammar.YIELD_STATEMENT)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(ReferenceMetric.ACCESSORS)
+        .subscribeTo(
+          CSharpGrammar.GET_ACCESSOR_DECLARATION,
+          CSharpGrammar.SET_ACCESSOR_DECLARATION,
+          CSharpGrammar.ADD_ACCESSOR_DECLARATION,
+          CSharpGrammar.REMOVE_ACCESSOR_DECLARATION)
+        .build()
+    };
+  }
+
+  /**
+   * The reference metrics are not aggregated by the scanner.
+   */
+  private static double aggregated(SourceCode sourceCode, ReferenceMetric metric) {
+    double result = sourceCode.getDouble(metric);
+    if (sourceCode.hasChildren()) {
+      for (SourceCode child : sourceCode.getChildren()) {
+        result += aggregated(child, metric);
+      }
+    }
+    return result;
+  }
+
+  private enum ReferenceMetric implements MetricDef {
+    LINES(CSharpMetric.LINES),
+    LINES_OF_CODE(CSharpMetric.LINES_OF_CODE),
+    COMMENT_LINES(CSharpMetric.COMMENT_LINES),
+    STATEMENTS(CSharpMetric.STATEMENTS),
+    ACCESSORS(CSharpMetric.ACCESSORS);
+
+    private final CSharpMetric metric;
+
+    private ReferenceMetric(CSharpMetric metric) {
+      this.metric = metric;
+    }
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public boolean isCalculatedMetric() {
+      return false;
+    }
+
+    @Override
+    public boolean aggregateIfThereIsAlreadyAValue() {
+      return false;
+    }
+
+    @Override
+    public boolean isThereAggregationFormula() {
+      return false;
+    }
+
+    @Override
+    public CalculatedMetricFormula getCalculatedMetricFormula() {
+      return null;
+    }
+
+  }
+
+}
@@ -57,6 +57,17 @@ public class CSharpPublicApiVisitorTest {
     assertThat(project.getInt(CSharpMetric.PUBLIC_DOC_API), is(1));
   }
 
+  @Test
+  public void testWithoutAncestorTracker() {
+    // Same public API as the visitor of the scanner, which uses a tracker
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(new CSharpConfiguration(Charset.forName("UTF-8")), new CSharpPublicApiVisitor());
+    scanner.scanFile(readFile("/metric/simpleInterface.cs"));
+    SourceProject project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+
+    assertThat(project.getInt(CSharpMetric.PUBLIC_API), is(2 * 3));
+    assertThat(project.getInt(CSharpMetric.PUBLIC_DOC_API), is(2 * 1));
+  }
+
   protected File readFile(String path) {
     return FileUtils.toFile(getClass().getResource(path));
   }
@@ -0,0 +1,178 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpParserPoolTest {
+
+  private static final File FILE = new File("src/test/resources/parser/cSharpSyntaxAllInOneFile.cs");
+  private static final File LARGE_FILE = new File("src/test/resources/parser/LinqBridge-1.2.cs");
+
+  @Test
+  public void one_pool_and_grammar_per_configuration() {
+    CSharpParserPool pool = CSharpParserPool.get(new CSharpConfiguration(Charsets.UTF_8));
+    assertThat(CSharpParserPool.get(new CSharpConfiguration(Charsets.UTF_8))).isSameAs(pool);
+
+    CSharpConfiguration otherCharset = new CSharpConfiguration(Charsets.ISO_8859_1);
+    assertThat(CSharpParserPool.get(otherCharset)).isNotSameAs(pool);
+    assertThat(CSharpParserPool.get(otherCharset).getGrammar()).isSameAs(pool.getGrammar());
+
+    CSharpConfiguration otherPolicy = new CSharpConfiguration(Charsets.UTF_8);
+    otherPolicy.setMemoizationPolicy(MemoizationPolicy.NONE);
+    assertThat(CSharpParserPool.get(otherPolicy).getGrammar()).isNotSameAs(pool.getGrammar());
+
+    assertThat(pool.newParser().getGrammar()).isSameAs(pool.getGrammar());
+  }
+
+  @Test
+  public void pools_of_configurations_used_last_kept() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTokenLimit(1);
+    CSharpParserPool pool = CSharpParserPool.get(conf);
+    for (int i = 0; i < CSharpParserPool.MAXIMUM_POOLS - 1; i++) {
+      CSharpConfiguration otherConf = new CSharpConfiguration(Charsets.UTF_8);
+      otherConf.setParseTokenLimit(2 + i);
+      CSharpParserPool.get(otherConf);
+      assertThat(CSharpParserPool.get(conf)).isSameAs(pool);
+    }
+
+    for (int i = 0; i < CSharpParserPool.MAXIMUM_POOLS; i++) {
+      CSharpConfiguration otherConf = new CSharpConfiguration(Charsets.UTF_8);
+      otherConf.setParseTokenLimit(2 + i);
+      CSharpParserPool.get(otherConf);
+    }
+    assertThat(CSharpParserPool.get(conf)).isNotSameAs(pool);
+    assertThat(CSharpParserPool.get(conf).getGrammar()).isSameAs(pool.getGrammar());
+  }
+
+  @Test
+  public void borrow_and_release() {
+    // Pool used by no other test, so that it has no idle parser
+    CSharpParserPool pool = CSharpParserPool.get(new CSharpConfiguration(Charsets.UTF_16));
+    Parser<Grammar> parser = pool.borrow();
+    Parser<Grammar> otherParser = pool.borrow();
+    assertThat(otherParser).isNotSameAs(parser);
+
+    parser.setRootRule(parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
+    assertThat(parser.parse("using System;").getToIndex()).isEqualTo(3);
+    pool.release(parser);
+    pool.release(otherParser);
+
+    Parser<Grammar> reused = pool.borrow();
+    assertThat(reused).isSameAs(parser);
+    assertThat(reused.getRootRule()).isSameAs(pool.getGrammar().getRootRule());
+  }
+
+  @Test
+  public void same_syntax_tree_as_parser_with_own_grammar() throws Exception {
+    final String expected = AstXmlPrinter.print(CSharpParser.create(new CSharpConfiguration(Charsets.UTF_8)).parse(FILE));
+    final CSharpParserPool pool = CSharpParserPool.get(new CSharpConfiguration(Charsets.UTF_8));
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<String>> results = Lists.newArrayList();
+      for (int i = 0; i < 6; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            Parser<Grammar> parser = pool.borrow();
+            try {
+              return AstXmlPrinter.print(parser.parse(FILE));
+            } finally {
+              pool.release(parser);
+            }
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void within_parse_budget() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    String expected = AstXmlPrinter.print(CSharpParserPool.get(conf).newParser().parse(FILE));
+
+    conf.setParseTimeout(60000);
+    conf.setParseTokenLimit(100000);
+    CSharpParserPool pool = CSharpParserPool.get(conf);
+    assertThat(pool).isNotSameAs(CSharpParserPool.get(new CSharpConfiguration(Charsets.UTF_8)));
+    Parser<Grammar> parser = pool.newParser();
+    assertThat(AstXmlPrinter.print(parser.parse(FILE))).isEqualTo(expected);
+    assertThat(AstXmlPrinter.print(parser.parse(FILE))).isEqualTo(expected);
+  }
+
+  @Test
+  public void token_limit_exceeded() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTokenLimit(10);
+    AstNode ast = CSharpParserPool.get(conf).newParser().parse(FILE);
+
+    assertThat(ast.getType()).isSameAs(UnparsedFile.TOO_MANY_TOKENS);
+    assertThat(ast.getNumberOfChildren()).isGreaterThan(10);
+    for (AstNode child : ast.getChildren()) {
+      assertThat(child.getType()).isSameAs(UnparsedFile.TOKEN);
+      assertThat(child.hasChildren()).isFalse();
+    }
+    assertThat(ast.getLastChild().getToken().getType()).isSameAs(GenericTokenType.EOF);
+  }
+
+  @Test
+  public void timeout_exceeded() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTimeout(1);
+    Parser<Grammar> parser = CSharpParserPool.get(conf).newParser();
+
+    AstNode ast = parser.parse(LARGE_FILE);
+    assertThat(ast.getType()).isSameAs(UnparsedFile.TIMEOUT);
+    assertThat(ast.getLastChild().getToken().getType()).isSameAs(GenericTokenType.EOF);
+
+    // Small enough to be parsed in time
+    assertThat(parser.parse("class A { }").is(CSharpGrammar.COMPILATION_UNIT)).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parse_timeout_must_not_be_negative() {
+    new CSharpConfiguration(Charsets.UTF_8).setParseTimeout(-1);
+  }
+
+}
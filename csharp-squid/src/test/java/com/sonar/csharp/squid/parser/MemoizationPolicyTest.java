@@ -0,0 +1,121 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.parser.MemoizationStatistics.RuleStatistics;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collection;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MemoizationPolicyTest {
+
+  private final Collection<File> files = FileUtils.listFiles(new File("src/test/resources/integration"), new String[] {"cs"}, true);
+
+  @Test
+  public void same_syntax_trees_with_all_policies() {
+    Parser<Grammar> none = parser(MemoizationPolicy.NONE);
+    Parser<Grammar> all = parser(MemoizationPolicy.ALL);
+    Parser<Grammar> curated = parser(MemoizationPolicy.CURATED);
+
+    for (File file : files) {
+      String expected = parse(none, file);
+      assertThat(parse(all, file)).as(file.getPath()).isEqualTo(expected);
+      assertThat(parse(curated, file)).as(file.getPath()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void curated_policy_is_the_default() {
+    assertThat(new CSharpConfiguration().getMemoizationPolicy()).isSameAs(MemoizationPolicy.CURATED);
+  }
+
+  @Test
+  public void statistics() {
+    MemoizationStatistics none = statistics(MemoizationPolicy.NONE);
+    MemoizationStatistics curated = statistics(MemoizationPolicy.CURATED);
+
+    assertThat(none.getFiles()).isEqualTo(files.size());
+    assertThat(curated.getFailures()).isEqualTo(none.getFailures());
+    assertThat(hits(none)).isEqualTo(0);
+    assertThat(hits(curated)).isGreaterThan(0);
+    assertThat(calls(curated)).isLessThan(calls(none));
+
+    for (RuleStatistics rule : curated.getRules()) {
+      if (rule.getHits() > 0) {
+        assertThat(MemoizationPolicy.CURATED_RULES).contains(CSharpGrammar.valueOf(rule.getName()));
+      }
+    }
+    assertThat(curated.toString()).contains("TYPE_PRIMARY");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void policy_must_not_be_null() {
+    new CSharpConfiguration().setMemoizationPolicy(null);
+  }
+
+  private static Parser<Grammar> parser(MemoizationPolicy policy) {
+    return CSharpParser.create(configuration(policy));
+  }
+
+  private static CSharpConfiguration configuration(MemoizationPolicy policy) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setMemoizationPolicy(policy);
+    return conf;
+  }
+
+  private static String parse(Parser<Grammar> parser, File file) {
+    try {
+      return AstXmlPrinter.print(parser.parse(file));
+    } catch (RecognitionException e) {
+      return e.getMessage();
+    }
+  }
+
+  private MemoizationStatistics statistics(MemoizationPolicy policy) {
+    return MemoizationStatistics.collect(configuration(policy), files);
+  }
+
+  private static long calls(MemoizationStatistics statistics) {
+    long result = 0;
+    for (RuleStatistics rule : statistics.getRules()) {
+      result += rule.getCalls();
+    }
+    return result;
+  }
+
+  private static long hits(MemoizationStatistics statistics) {
+    long result = 0;
+    for (RuleStatistics rule : statistics.getRules()) {
+      result += rule.getHits();
+    }
+    return result;
+  }
+
+}
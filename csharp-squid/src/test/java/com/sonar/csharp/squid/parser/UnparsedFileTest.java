@@ -0,0 +1,53 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import org.junit.Test;
+import org.sonar.squidbridge.api.SourceFile;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class UnparsedFileTest {
+
+  private static final File FILE = new File("src/test/resources/metric/Money.cs");
+
+  @Test
+  public void lexer_only_metrics() {
+    SourceFile parsed = CSharpAstScanner.scanSingleFile(FILE, new CSharpConfiguration(Charsets.UTF_8));
+
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTokenLimit(1);
+    SourceFile unparsed = CSharpAstScanner.scanSingleFile(FILE, conf);
+
+    assertThat(unparsed.getInt(CSharpMetric.LINES)).isEqualTo(parsed.getInt(CSharpMetric.LINES));
+    assertThat(unparsed.getInt(CSharpMetric.LINES_OF_CODE)).isEqualTo(parsed.getInt(CSharpMetric.LINES_OF_CODE));
+    assertThat(unparsed.getInt(CSharpMetric.COMMENT_LINES)).isEqualTo(parsed.getInt(CSharpMetric.COMMENT_LINES));
+    assertThat(parsed.getInt(CSharpMetric.STATEMENTS)).isGreaterThan(0);
+    assertThat(unparsed.getInt(CSharpMetric.STATEMENTS)).isEqualTo(0);
+    assertThat(unparsed.hasChildren()).isFalse();
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.profiling;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.metric.CSharpComplexityVisitor;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.checks.SquidCheck;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ScanProfilerTest {
+
+  private final Collection<File> files = FileUtils.listFiles(new File("src/test/resources/integration"), new String[] {"cs"}, true);
+  private final File reportFile = new File("target/ScanProfilerTest/profiling.csv");
+
+  @Before
+  public void init() {
+    reportFile.delete();
+  }
+
+  @Test
+  public void should_report_phases_and_visitors() throws IOException {
+    ClassesCheckSupplier supplier = new ClassesCheckSupplier();
+    AstScanner<Grammar> scanner = scan(1, reportFile, supplier);
+
+    List<String> lines = Files.readLines(reportFile, Charsets.UTF_8);
+    assertThat(lines.get(0)).isEqualTo("kind,name,invocations,time_ms,percent");
+    assertThat(names(lines)).contains(
+      "phase,read",
+      "phase,lex",
+      "phase,parse",
+      "phase,visit",
+      "visitor," + CSharpComplexityVisitor.class.getName(),
+      "visitor," + ClassesCheck.class.getName(),
+      "phase,read," + files.size());
+
+    assertThat(messages(scanner).size()).isEqualTo(messages(scan(1, null, new ClassesCheckSupplier())).size());
+    for (CheckMessage message : messages(scanner)) {
+      assertThat(message.getCheck()).isSameAs(supplier.checks.get(0));
+    }
+  }
+
+  @Test
+  public void should_sum_counters_of_parallel_workers() throws IOException {
+    ClassesCheckSupplier supplier = new ClassesCheckSupplier();
+    AstScanner<Grammar> scanner = scan(2, reportFile, supplier);
+
+    List<String> lines = Files.readLines(reportFile, Charsets.UTF_8);
+    assertThat(names(lines)).contains("phase,read," + files.size());
+    assertThat(messages(scanner).size()).isEqualTo(messages(scan(1, null, new ClassesCheckSupplier())).size());
+    for (CheckMessage message : messages(scanner)) {
+      assertThat(message.getCheck()).isSameAs(supplier.checks.get(0));
+    }
+  }
+
+  private AstScanner<Grammar> scan(int threads, File profilingReport, ClassesCheckSupplier supplier) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setThreads(threads);
+    conf.setProfilingReport(profilingReport);
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, supplier);
+    scanner.scanFiles(files);
+    return scanner;
+  }
+
+  private static List<String> names(List<String> lines) {
+    List<String> result = Lists.newArrayList();
+    for (String line : lines) {
+      String[] columns = line.split(",");
+      result.add(columns[0] + "," + columns[1]);
+      result.add(columns[0] + "," + columns[1] + "," + columns[2]);
+    }
+    return result;
+  }
+
+  private static List<CheckMessage> messages(AstScanner<Grammar> scanner) {
+    List<CheckMessage> result = Lists.newArrayList();
+    for (SourceCode sourceFile : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      result.addAll(sourceFile.getCheckMessages());
+    }
+    return result;
+  }
+
+  private static class ClassesCheckSupplier implements Supplier<List<SquidAstVisitor<Grammar>>> {
+
+    private final List<ClassesCheck> checks = Lists.newArrayList();
+
+    @Override
+    public List<SquidAstVisitor<Grammar>> get() {
+      ClassesCheck check = new ClassesCheck();
+      checks.add(check);
+      return Lists.<SquidAstVisitor<Grammar>>newArrayList(check);
+    }
+
+  }
+
+  private static class ClassesCheck extends SquidCheck<Grammar> {
+
+    @Override
+    public void init() {
+      subscribeTo(CSharpGrammar.CLASS_DECLARATION);
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      getContext().createLineViolation(this, "Class", astNode);
+    }
+
+  }
+
+}
@@ -0,0 +1,7 @@
+/* Header
+   comment */class A
+{
+  // comment  int i; /* multi
+  line */
+  string s = @"verbatimstring";
+}
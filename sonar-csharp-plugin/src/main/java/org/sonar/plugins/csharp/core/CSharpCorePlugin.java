@@ -32,6 +32,7 @@ import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
 import org.sonar.plugins.csharp.squid.CSharpSquidSensor;
 import org.sonar.plugins.csharp.squid.colorizer.CSharpSourceCodeColorizer;
 import org.sonar.plugins.csharp.squid.cpd.CSharpCPDMapping;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDTokenStore;
 
 import java.util.List;
 
@@ -52,6 +53,65 @@ import java.util.List;
       "do not get incremented. If set to \"false\", those file headers are considered as comments and metrics such as " +
       "\"Comment lines\" get incremented.",
     project = true, global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = CSharpSquidConstants.THREADS,
+    defaultValue = "1",
+    name = "Number of threads",
+    description = "Number of threads used to analyze the C# files. Set it to the number of available cores to speed up the analysis " +
+      "of large projects, at the cost of a higher memory consumption.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.STATE_MACHINE_LEXER,
+    defaultValue = "false",
+    name = "State machine lexer",
+    description = "If set to \"true\", the C# files are split into tokens by a hand-written state machine instead of regular " +
+      "expressions, which is faster and uses less memory, as the tokens of a same identifier share its name. Both produce the same " +
+      "tokens, and thus the same measures, issues and duplications.",
+    project = true, global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = CSharpSquidConstants.CONDITIONAL_COMPILATION_SYMBOLS,
+    defaultValue = "DEBUG,TRACE",
+    name = "Conditional compilation symbols",
+    description = "Comma-separated list of the symbols defined when compiling the C# files, by default the ones of the Debug " +
+      "configuration of Visual Studio. Only the code which would be compiled given these symbols, and the ones defined by the #define " +
+      "directives, is analyzed: the code of the other sections of the #if directives is neither measured (lines of code, complexity, " +
+      "public API...), nor checked by the rules, nor looked for duplications.",
+    project = true, global = true),
+  @Property(
+    key = CSharpSquidConstants.PARSE_TIMEOUT,
+    defaultValue = "60000",
+    name = "Parse timeout",
+    description = "Time in milliseconds after which the parsing of a C# file is given up, 0 meaning no limit. Only the lines, lines of code " +
+      "and comment lines of such a file are measured, and a \"C# parser failure\" issue is raised on it.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.PARSE_TOKEN_LIMIT,
+    defaultValue = "1000000",
+    name = "Parse token limit",
+    description = "Number of tokens above which a C# file is not parsed, 0 meaning no limit. It bounds the memory used to parse a file. " +
+      "Only the lines, lines of code and comment lines of such a file are measured, and a \"C# parser failure\" issue is raised on it.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.ANALYSIS_CACHE,
+    defaultValue = "",
+    name = "Analysis cache",
+    description = "Path of the file in which the results of the analysis of each C# file are stored, relative to the base directory of the " +
+      "project. Files whose content did not change since the previous analysis are then not analyzed again, as long as the plugin " +
+      "version and the quality profile remain the same. Leave empty to analyze all files.",
+    project = true, global = false),
+  @Property(
+    key = CSharpSquidConstants.PROFILING,
+    defaultValue = "false",
+    name = "Profile the analysis",
+    description = "If set to \"true\", the time spent reading, lexing, parsing and visiting files, and the time spent in each check, " +
+      "are logged at the end of the analysis and written to the file \"" + CSharpSquidConstants.PROFILING_REPORT + "\" of the working " +
+      "directory.",
+    project = true, global = true,
     type = PropertyType.BOOLEAN)
 })
 public class CSharpCorePlugin extends SonarPlugin {
@@ -72,6 +132,7 @@ public class CSharpCorePlugin extends SonarPlugin {
 
       // C# Squid
       CSharpCPDMapping.class,
+      CSharpCPDTokenStore.class,
       CSharpSourceCodeColorizer.class,
       CSharpSquidSensor.class,
 
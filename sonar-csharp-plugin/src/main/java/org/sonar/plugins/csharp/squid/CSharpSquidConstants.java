@@ -25,6 +25,14 @@ public final class CSharpSquidConstants {
   public static final String REPOSITORY_NAME = "SonarQube";
 
   public static final String IGNORE_HEADER_COMMENTS = "sonar.cs.ignoreHeaderComments";
+  public static final String THREADS = "sonar.cs.threads";
+  public static final String STATE_MACHINE_LEXER = "sonar.cs.stateMachineLexer";
+  public static final String CONDITIONAL_COMPILATION_SYMBOLS = "sonar.cs.conditionalCompilationSymbols";
+  public static final String PARSE_TIMEOUT = "sonar.cs.parseTimeout";
+  public static final String PARSE_TOKEN_LIMIT = "sonar.cs.parseTokenLimit";
+  public static final String ANALYSIS_CACHE = "sonar.cs.analysisCache";
+  public static final String PROFILING = "sonar.cs.profiling";
+  public static final String PROFILING_REPORT = "csharp-profiling.csv";
 
   private CSharpSquidConstants() {
   }
@@ -19,25 +19,31 @@
  */
 package org.sonar.plugins.csharp.squid;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.sonar.csharp.checks.CheckList;
 import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.CSharpSquidIndex;
+import com.sonar.csharp.squid.SourceFileListener;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.api.source.SourceMember;
 import com.sonar.csharp.squid.metric.CSharpFileLinesVisitor;
 import com.sonar.csharp.squid.metric.FileProvider;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import com.sonar.sslr.api.Grammar;
-import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.SquidAstVisitor;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.checks.AnnotationCheckFactory;
 import org.sonar.api.checks.NoSonarFilter;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.measures.RangeDistributionBuilder;
@@ -45,22 +51,33 @@ import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.ActiveRuleParam;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.plugins.csharp.api.CSharp;
 import org.sonar.plugins.csharp.api.CSharpConstants;
+import org.sonar.plugins.csharp.squid.cache.AnalysisCache;
+import org.sonar.plugins.csharp.squid.cache.CachedFile;
+import org.sonar.plugins.csharp.squid.cache.RecordingFileLinesContextFactory;
 import org.sonar.plugins.csharp.squid.check.CSharpCheck;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDTokenStore;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDVisitor;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
-import org.sonar.squidbridge.indexer.QueryByParent;
-import org.sonar.squidbridge.indexer.QueryByType;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 public final class CSharpSquidSensor implements Sensor {
 
@@ -72,29 +89,36 @@ public final class CSharpSquidSensor implements Sensor {
   private final CSharp cSharp;
   private final ModuleFileSystem fileSystem;
   private final NoSonarFilter noSonarFilter;
+  private final RulesProfile profile;
+  private final Collection<Class> allChecks;
   private final AnnotationCheckFactory annotationCheckFactory;
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final CSharpCPDTokenStore cpdTokenStore;
 
   private Project project;
   private SensorContext context;
-  private AstScanner<Grammar> scanner;
+  private RecordingFileLinesContextFactory recordingFileLinesContextFactory;
+  private boolean cpdEnabled;
 
   public CSharpSquidSensor(Settings settings, CSharp cSharp,
-    ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory) {
-    this(settings, cSharp, fileSystem, profile, noSonarFilter, fileLinesContextFactory, new CSharpCheck[0]);
+    ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory,
+    CSharpCPDTokenStore cpdTokenStore) {
+    this(settings, cSharp, fileSystem, profile, noSonarFilter, fileLinesContextFactory, cpdTokenStore, new CSharpCheck[0]);
   }
 
   public CSharpSquidSensor(Settings settings, CSharp cSharp,
     ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory,
-    CSharpCheck[] cSharpChecks) {
+    CSharpCPDTokenStore cpdTokenStore, CSharpCheck[] cSharpChecks) {
     this.settings = settings;
     this.cSharp = cSharp;
     this.fileSystem = fileSystem;
     this.noSonarFilter = noSonarFilter;
     this.fileLinesContextFactory = fileLinesContextFactory;
+    this.cpdTokenStore = cpdTokenStore;
 
-    Collection<Class> allChecks = CSharpCheck.toCollection(cSharpChecks);
-    allChecks.addAll(CheckList.getChecks());
+    this.profile = profile;
+    this.allChecks = CSharpCheck.toCollection(cSharpChecks);
+    this.allChecks.addAll(CheckList.getChecks());
     this.annotationCheckFactory = AnnotationCheckFactory.create(profile, CSharpSquidConstants.REPOSITORY_KEY, allChecks);
   }
 
@@ -108,15 +132,45 @@ public final class CSharpSquidSensor implements Sensor {
     this.project = project;
     this.context = context;
 
-    Collection<SquidAstVisitor<Grammar>> squidChecks = annotationCheckFactory.getChecks();
-    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList(squidChecks);
-    // TODO: remove the following line & class once SSLR Squid bridge computes NCLOC_DATA_KEY & COMMENT_LINES_DATA_KEY
-    visitors.add(new CSharpFileLinesVisitor(new FileProvider(project), fileLinesContextFactory));
-    scanner = CSharpAstScanner.create(createParserConfiguration(project), visitors.toArray(new SquidAstVisitor[visitors.size()]));
-    scanner.scanFiles(filesToAnalyze());
+    CSharpConfiguration conf = createParserConfiguration(project);
+    AnalysisCache cache = loadCache(conf);
+    recordingFileLinesContextFactory = new RecordingFileLinesContextFactory();
+    cpdEnabled = !isCpdSkipped();
+
+    List<java.io.File> filesToAnalyze = filesToAnalyze();
+    List<java.io.File> filesToScan = Lists.newArrayList();
+    Map<java.io.File, CachedFile> cachedFiles = Maps.newLinkedHashMap();
+    for (java.io.File file : filesToAnalyze) {
+      CachedFile cachedFile = cache == null ? null : cache.get(file);
+      if (cachedFile == null) {
+        filesToScan.add(file);
+      } else {
+        cachedFiles.put(file, cachedFile);
+      }
+    }
+    if (cache != null) {
+      LOG.info(cachedFiles.size() + " unchanged C# files are taken from the analysis cache, " + filesToScan.size() + " files are analyzed");
+    }
+
+    CSharpAstScanner.create(conf, new VisitorsSupplier(), new SourceFileSaver(cache)).scanFiles(filesToScan);
+
+    for (Map.Entry<java.io.File, CachedFile> cachedFile : cachedFiles.entrySet()) {
+      replay(cachedFile.getKey(), cachedFile.getValue());
+    }
+
+    if (cache != null) {
+      cache.save();
+    }
+
+    if (cpdEnabled) {
+      // Tokens of the files which were not scanned, so that the CPD engine does not have to lex them one at a time
+      cpdTokenStore.lexMissingFiles(filesToAnalyze, conf);
+    }
+  }
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    saveMeasures(squidSourceFiles);
+  private boolean isCpdSkipped() {
+    String languageSkipKey = "sonar.cpd." + CSharpConstants.LANGUAGE_KEY + ".skip";
+    return settings.hasKey(languageSkipKey) ? settings.getBoolean(languageSkipKey) : settings.getBoolean(CoreProperties.CPD_SKIP_PROPERTY);
   }
 
   private List<java.io.File> filesToAnalyze() {
@@ -126,32 +180,211 @@ public final class CSharpSquidSensor implements Sensor {
   private CSharpConfiguration createParserConfiguration(Project project) {
     CSharpConfiguration conf = new CSharpConfiguration(fileSystem.sourceCharset());
     conf.setIgnoreHeaderComments(settings.getBoolean(CSharpSquidConstants.IGNORE_HEADER_COMMENTS));
+    conf.setThreads(Math.max(1, settings.getInt(CSharpSquidConstants.THREADS)));
+    conf.setStateMachineLexer(settings.getBoolean(CSharpSquidConstants.STATE_MACHINE_LEXER));
+    conf.setDefinedSymbols(Arrays.asList(settings.getStringArray(CSharpSquidConstants.CONDITIONAL_COMPILATION_SYMBOLS)));
+    conf.setParseTimeout(Math.max(0, settings.getLong(CSharpSquidConstants.PARSE_TIMEOUT)));
+    conf.setParseTokenLimit(Math.max(0, settings.getInt(CSharpSquidConstants.PARSE_TOKEN_LIMIT)));
+    if (settings.getBoolean(CSharpSquidConstants.PROFILING)) {
+      conf.setProfilingReport(new java.io.File(fileSystem.workingDir(), CSharpSquidConstants.PROFILING_REPORT));
+    }
     return conf;
   }
 
-  private void saveMeasures(Collection<SourceCode> sourceFiles) {
-    for (SourceCode squidFileCode : sourceFiles) {
-      SourceFile squidFile = (SourceFile) squidFileCode;
+  private AnalysisCache loadCache(CSharpConfiguration conf) {
+    String path = settings.getString(CSharpSquidConstants.ANALYSIS_CACHE);
+    if (StringUtils.isBlank(path)) {
+      return null;
+    }
+
+    String pluginVersion = AnalysisCache.pluginVersion();
+    if (pluginVersion == null) {
+      // Results of another version of the plugin could be replayed
+      LOG.warn("Unable to read the version of the C# plugin, the analysis cache " + path + " is not used and all files will be analyzed");
+      return null;
+    }
+
+    java.io.File cacheFile = new java.io.File(path);
+    if (!cacheFile.isAbsolute()) {
+      cacheFile = new java.io.File(fileSystem.baseDir(), path);
+    }
+    return AnalysisCache.load(cacheFile, cacheKey(pluginVersion, conf));
+  }
+
+  /**
+   * Everything which, besides the content of a file, influences the results of its analysis.
+   */
+  private String cacheKey(String pluginVersion, CSharpConfiguration conf) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(pluginVersion);
+    sb.append('|').append(conf.getCharset().name());
+    sb.append('|').append(conf.getIgnoreHeaderComments());
+    sb.append('|').append(new TreeSet<String>(conf.getDefinedSymbols()));
+    sb.append('|').append(conf.getParseTimeout());
+    sb.append('|').append(conf.getParseTokenLimit());
+
+    for (Class check : allChecks) {
+      sb.append('|').append(check.getName());
+    }
+
+    List<String> activeRules = Lists.newArrayList();
+    for (ActiveRule activeRule : profile.getActiveRulesByRepository(CSharpSquidConstants.REPOSITORY_KEY)) {
+      List<String> params = Lists.newArrayList();
+      for (ActiveRuleParam param : activeRule.getActiveRuleParams()) {
+        params.add(param.getKey() + "=" + param.getValue());
+      }
+      Collections.sort(params);
+      activeRules.add(activeRule.getRuleKey() + ":" + activeRule.getSeverity() + params);
+    }
+    Collections.sort(activeRules);
+    sb.append('|').append(activeRules);
+
+    return sb.toString();
+  }
 
-      /* Create the sonar file */
-      File sonarFile = File.fromIOFile(new java.io.File(squidFile.getKey()), project);
-      sonarFile.setLanguage(cSharp);
+  private CachedFile toCachedFile(SourceFile squidFile, Map<String, Map<Integer, Integer>> lineValues) {
+    CachedFile cachedFile = new CachedFile();
 
-      /* No Sonar */
-      noSonarFilter.addResource(sonarFile, squidFile.getNoSonarTagLines());
+    for (CSharpMetric metric : CSharpMetric.values()) {
+      cachedFile.getMeasures().put(metric, squidFile.getDouble(metric));
+    }
+    for (SourceCode squidMethod : CSharpSquidIndex.searchDescendants(squidFile, SourceMember.class)) {
+      cachedFile.getMemberComplexities().put(squidMethod.getKey(), squidMethod.getDouble(CSharpMetric.COMPLEXITY));
+    }
+    cachedFile.getNoSonarLines().addAll(squidFile.getNoSonarTagLines());
+    cachedFile.getLineValues().putAll(lineValues);
 
-      /* Files complexity distribution */
-      saveFilesComplexityDistribution(sonarFile, squidFile);
+    if (squidFile.hasCheckMessages()) {
+      for (CheckMessage message : squidFile.getCheckMessages()) {
+        String ruleKey = annotationCheckFactory.getActiveRule(message.getCheck()).getRuleKey();
+        cachedFile.getIssues().add(new CachedFile.Issue(ruleKey, message.getLine(), message.getText(Locale.ENGLISH)));
+      }
+    }
 
-      /* Methods complexity distribution */
-      saveMethodsComplexityDistribution(sonarFile, squidFile);
+    return cachedFile;
+  }
 
-      /* Check messages */
-      saveViolations(squidFile, sonarFile);
+  /**
+   * Restores the results of a file taken from the cache, and saves them with its lines data.
+   */
+  private void replay(java.io.File file, CachedFile cachedFile) {
+    SourceFile squidFile = new SourceFile(file.getAbsolutePath(), file.getName());
+    for (Map.Entry<CSharpMetric, Double> measure : cachedFile.getMeasures().entrySet()) {
+      squidFile.setMeasure(measure.getKey(), measure.getValue());
+    }
+    for (Map.Entry<String, Double> memberComplexity : cachedFile.getMemberComplexities().entrySet()) {
+      SourceMember squidMethod = new SourceMember(memberComplexity.getKey());
+      squidMethod.setMeasure(CSharpMetric.COMPLEXITY, memberComplexity.getValue());
+      squidFile.addChild(squidMethod);
+    }
+    squidFile.addNoSonarTagLines(cachedFile.getNoSonarLines());
 
-      /* Metrics at the file level */
-      saveMeasures(sonarFile, squidFile);
+    for (CachedFile.Issue issue : cachedFile.getIssues()) {
+      ActiveRule activeRule = profile.getActiveRule(CSharpSquidConstants.REPOSITORY_KEY, issue.getRuleKey());
+      CheckMessage message = new CheckMessage(annotationCheckFactory.getCheck(activeRule), issue.getMessage());
+      if (issue.getLine() != null) {
+        message.setLine(issue.getLine());
+      }
+      squidFile.log(message);
+    }
+
+    save(squidFile, cachedFile.getLineValues());
+  }
+
+  private File sonarFile(SourceFile squidFile) {
+    File sonarFile = File.fromIOFile(new java.io.File(squidFile.getKey()), project);
+    sonarFile.setLanguage(cSharp);
+    return sonarFile;
+  }
+
+  /**
+   * Provides the visitors of each worker of the scanner: the first one gets the checks of {@link #annotationCheckFactory},
+   * the others get new instances of the same checks, configured from the same active rules.
+   */
+  private class VisitorsSupplier implements Supplier<List<SquidAstVisitor<Grammar>>> {
+
+    private boolean first = true;
+
+    @Override
+    public List<SquidAstVisitor<Grammar>> get() {
+      Collection<SquidAstVisitor<Grammar>> squidChecks = annotationCheckFactory.getChecks();
+      List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList();
+
+      if (first) {
+        visitors.addAll(squidChecks);
+        first = false;
+      } else {
+        AnnotationCheckFactory workerCheckFactory = AnnotationCheckFactory.create(profile, CSharpSquidConstants.REPOSITORY_KEY, allChecks);
+        for (SquidAstVisitor<Grammar> squidCheck : squidChecks) {
+          visitors.add((SquidAstVisitor<Grammar>) workerCheckFactory.getCheck(annotationCheckFactory.getActiveRule(squidCheck)));
+        }
+      }
+
+      // Records the lines computed along with the other metrics, which are saved with the file
+      visitors.add(new CSharpFileLinesVisitor(new FileProvider(project), recordingFileLinesContextFactory));
+      if (cpdEnabled) {
+        // Records the CPD tokens, so that the files do not have to be lexed again
+        visitors.add(new CSharpCPDVisitor(cpdTokenStore));
+      }
+      return visitors;
+    }
+
+  }
+
+  /**
+   * Saves each file as soon as it is scanned, so that the scanner does not have to keep all of them until the end of the analysis.
+   * The files are handed over by the thread of the sensor, which does all the saves, even when they are scanned by several workers.
+   */
+  private class SourceFileSaver implements SourceFileListener {
+
+    private final AnalysisCache cache;
+
+    public SourceFileSaver(@Nullable AnalysisCache cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public void sourceFileScanned(SourceFile squidFile) {
+      Map<String, Map<Integer, Integer>> lineValues = recordingFileLinesContextFactory.takeValues(sonarFile(squidFile));
+      if (cache != null) {
+        cache.put(new java.io.File(squidFile.getKey()), toCachedFile(squidFile, lineValues));
+      }
+      save(squidFile, lineValues);
+    }
+
+  }
+
+  private void save(SourceFile squidFile, Map<String, Map<Integer, Integer>> lineValues) {
+    /* Create the sonar file */
+    File sonarFile = sonarFile(squidFile);
+
+    /* Lines data */
+    saveLineValues(sonarFile, lineValues);
+
+    /* No Sonar */
+    noSonarFilter.addResource(sonarFile, squidFile.getNoSonarTagLines());
+
+    /* Files complexity distribution */
+    saveFilesComplexityDistribution(sonarFile, squidFile);
+
+    /* Methods complexity distribution */
+    saveMethodsComplexityDistribution(sonarFile, squidFile);
+
+    /* Check messages */
+    saveViolations(squidFile, sonarFile);
+
+    /* Metrics at the file level */
+    saveMeasures(sonarFile, squidFile);
+  }
+
+  private void saveLineValues(File sonarFile, Map<String, Map<Integer, Integer>> lineValues) {
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(sonarFile);
+    for (Map.Entry<String, Map<Integer, Integer>> metricValues : lineValues.entrySet()) {
+      for (Map.Entry<Integer, Integer> lineValue : metricValues.getValue().entrySet()) {
+        fileLinesContext.setIntValue(metricValues.getKey(), lineValue.getKey(), lineValue.getValue());
+      }
     }
+    fileLinesContext.save();
   }
 
   private void saveMeasures(Resource sonarFile, SourceCode squidFile) {
@@ -189,11 +422,10 @@ public final class CSharpSquidSensor implements Sensor {
   }
 
   private void saveMethodsComplexityDistribution(File sonarFile, SourceFile squidFile) {
-    Collection<SourceCode> squidMethods = scanner.getIndex().search(new QueryByParent(squidFile), new QueryByType(SourceMember.class));
     RangeDistributionBuilder complexityMethodDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION,
       METHOD_DISTRIB_BOTTOM_LIMITS);
 
-    for (SourceCode squidMethod : squidMethods) {
+    for (SourceCode squidMethod : CSharpSquidIndex.searchDescendants(squidFile, SourceMember.class)) {
       complexityMethodDistribution.add(squidMethod.getDouble(CSharpMetric.COMPLEXITY));
     }
 
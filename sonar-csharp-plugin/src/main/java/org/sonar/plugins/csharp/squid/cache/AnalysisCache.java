@@ -0,0 +1,182 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of the results of the analysis of C# files, used to avoid re-analyzing the files which did not change since
+ * the previous analysis.
+ * <p>
+ * An entry is reused only if the content of the file is the same, and the whole cache is discarded when its key changes:
+ * this key must thus identify everything else which can influence the results, such as the plugin version and the active rules.
+ * Only the entries of the files which are looked up or added during the current analysis are kept when the cache is saved.
+ * </p>
+ */
+public class AnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisCache.class);
+  private static final String VERSION_RESOURCE = "version.properties";
+
+  private final File file;
+  private final String key;
+  private final Map<String, CachedFile> previousEntries;
+  private final Map<String, CachedFile> entries = Maps.newHashMap();
+  private final Map<String, byte[]> hashes = Maps.newHashMap();
+
+  private AnalysisCache(File file, String key, Map<String, CachedFile> previousEntries) {
+    this.file = file;
+    this.key = key;
+    this.previousEntries = previousEntries;
+  }
+
+  /**
+   * Loads the cache stored in the given file. An empty cache is returned if the file does not exist, cannot be read, or was
+   * saved with a different key.
+   */
+  public static AnalysisCache load(File file, String key) {
+    Map<String, CachedFile> previousEntries = Maps.newHashMap();
+
+    if (file.isFile()) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        if (key.equals(in.readObject())) {
+          previousEntries = (Map<String, CachedFile>) in.readObject();
+        } else {
+          LOG.info("The C# analysis cache " + file + " is outdated, all files will be analyzed");
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to read the C# analysis cache " + file + ", all files will be analyzed", e);
+      } catch (ClassNotFoundException e) {
+        LOG.warn("Unable to read the C# analysis cache " + file + ", all files will be analyzed", e);
+      } finally {
+        Closeables.closeQuietly(in);
+      }
+    }
+
+    return new AnalysisCache(file, key, previousEntries);
+  }
+
+  /**
+   * @return the cached results of the given file, or null if the file was not analyzed previously or if its content changed
+   */
+  public CachedFile get(File sourceFile) {
+    String path = sourceFile.getAbsolutePath();
+    byte[] hash = hash(sourceFile);
+    hashes.put(path, hash);
+
+    CachedFile entry = previousEntries.get(path);
+    if (entry == null || !Arrays.equals(entry.getHash(), hash)) {
+      return null;
+    }
+
+    entries.put(path, entry);
+    return entry;
+  }
+
+  public void put(File sourceFile, CachedFile entry) {
+    String path = sourceFile.getAbsolutePath();
+    byte[] hash = hashes.get(path);
+    entry.setHash(hash == null ? hash(sourceFile) : hash);
+    entries.put(path, entry);
+  }
+
+  public void save() {
+    ObjectOutputStream out = null;
+    try {
+      Files.createParentDirs(file);
+      out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+      out.writeObject(key);
+      out.writeObject(entries);
+    } catch (IOException e) {
+      LOG.warn("Unable to save the C# analysis cache " + file, e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  /**
+   * @return the version of the plugin, written at build time into a resource of this package, or null if it cannot be read
+   */
+  @Nullable
+  public static String pluginVersion() {
+    return pluginVersion(AnalysisCache.class.getResource(VERSION_RESOURCE));
+  }
+
+  @Nullable
+  static String pluginVersion(@Nullable URL resource) {
+    if (resource == null) {
+      return null;
+    }
+
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = resource.openStream();
+      properties.load(in);
+    } catch (IOException e) {
+      LOG.warn("Unable to read the version of the C# plugin from " + resource, e);
+      return null;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+
+    String version = properties.getProperty("version");
+    // The resource was not filtered by the build
+    return StringUtils.isBlank(version) || version.startsWith("${") ? null : version;
+  }
+
+  private static byte[] hash(File sourceFile) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(Files.toByteArray(sourceFile));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read the file " + sourceFile, e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.sonar.csharp.squid.api.CSharpMetric;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of the analysis of a single C# file, as stored in the {@link AnalysisCache}.
+ */
+public final class CachedFile implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private byte[] hash;
+  private final Map<CSharpMetric, Double> measures = new EnumMap<CSharpMetric, Double>(CSharpMetric.class);
+  private final Map<String, Double> memberComplexities = new LinkedHashMap<String, Double>();
+  private final Set<Integer> noSonarLines = new HashSet<Integer>();
+  private final Map<String, Map<Integer, Integer>> lineValues = new HashMap<String, Map<Integer, Integer>>();
+  private final List<Issue> issues = new ArrayList<Issue>();
+
+  byte[] getHash() {
+    return hash;
+  }
+
+  void setHash(byte[] hash) {
+    this.hash = hash;
+  }
+
+  public Map<CSharpMetric, Double> getMeasures() {
+    return measures;
+  }
+
+  /**
+   * Complexity of each member of the file, by key of member.
+   */
+  public Map<String, Double> getMemberComplexities() {
+    return memberComplexities;
+  }
+
+  public Set<Integer> getNoSonarLines() {
+    return noSonarLines;
+  }
+
+  /**
+   * Values saved through the {@link org.sonar.api.measures.FileLinesContext} of the file, by metric key and then by line.
+   */
+  public Map<String, Map<Integer, Integer>> getLineValues() {
+    return lineValues;
+  }
+
+  public List<Issue> getIssues() {
+    return issues;
+  }
+
+  public static final class Issue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String ruleKey;
+    private final Integer line;
+    private final String message;
+
+    public Issue(String ruleKey, Integer line, String message) {
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.message = message;
+    }
+
+    public String getRuleKey() {
+      return ruleKey;
+    }
+
+    /**
+     * @return the line of the issue, or null if the issue is on the whole file
+     */
+    public Integer getLine() {
+      return line;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+  }
+
+}
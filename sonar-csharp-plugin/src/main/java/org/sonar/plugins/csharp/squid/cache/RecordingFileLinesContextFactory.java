@@ -0,0 +1,97 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.resources.Resource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory which keeps in memory the integer values saved through the {@link FileLinesContext} of each file, until they are taken.
+ * The values are then saved from the thread of the sensor, even when the files are scanned by several workers, and stored in the
+ * {@link AnalysisCache}.
+ */
+public class RecordingFileLinesContextFactory implements FileLinesContextFactory {
+
+  private final Map<String, Map<String, Map<Integer, Integer>>> recordedValues = new ConcurrentHashMap<String, Map<String, Map<Integer, Integer>>>();
+
+  @Override
+  public FileLinesContext createFor(Resource resource) {
+    Map<String, Map<Integer, Integer>> values = Maps.newHashMap();
+    recordedValues.put(resource.getKey(), values);
+    return new RecordingFileLinesContext(values);
+  }
+
+  /**
+   * Removes the values recorded for the given resource, so that they are only kept until the resource is saved.
+   *
+   * @return the values saved for the given resource, by metric key and then by line
+   */
+  public Map<String, Map<Integer, Integer>> takeValues(Resource resource) {
+    Map<String, Map<Integer, Integer>> values = recordedValues.remove(resource.getKey());
+    return values == null ? Maps.<String, Map<Integer, Integer>>newHashMap() : values;
+  }
+
+  private static class RecordingFileLinesContext implements FileLinesContext {
+
+    private final Map<String, Map<Integer, Integer>> values;
+
+    public RecordingFileLinesContext(Map<String, Map<Integer, Integer>> values) {
+      this.values = values;
+    }
+
+    @Override
+    public void setIntValue(String metricKey, int line, int value) {
+      Map<Integer, Integer> metricValues = values.get(metricKey);
+      if (metricValues == null) {
+        metricValues = Maps.newHashMap();
+        values.put(metricKey, metricValues);
+      }
+      metricValues.put(line, value);
+    }
+
+    @Override
+    public Integer getIntValue(String metricKey, int line) {
+      Map<Integer, Integer> metricValues = values.get(metricKey);
+      return metricValues == null ? null : metricValues.get(line);
+    }
+
+    @Override
+    public void setStringValue(String metricKey, int line, String value) {
+      throw new UnsupportedOperationException("Only integer values are recorded");
+    }
+
+    @Override
+    public String getStringValue(String metricKey, int line) {
+      throw new UnsupportedOperationException("Only integer values are recorded");
+    }
+
+    @Override
+    public void save() {
+      // The values are saved once taken
+    }
+
+  }
+
+}
@@ -19,25 +19,31 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
+import com.sonar.csharp.squid.CSharpConfiguration;
 import net.sourceforge.pmd.cpd.Tokenizer;
 import org.sonar.api.batch.AbstractCpdMapping;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Project;
 import org.sonar.plugins.csharp.api.CSharp;
+import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
 
-import java.nio.charset.Charset;
+import java.util.Arrays;
 
 public class CSharpCPDMapping extends AbstractCpdMapping {
 
   private final CSharp csharp;
-  private final Charset charset;
+  private final CSharpConfiguration conf;
+  private final CSharpCPDTokenStore store;
 
-  public CSharpCPDMapping(CSharp csharp, Project project, Settings settings) {
+  public CSharpCPDMapping(CSharp csharp, Project project, Settings settings, CSharpCPDTokenStore store) {
     super();
     this.csharp = csharp;
     // FIXME: deprecated
-    this.charset = project.getFileSystem().getSourceCharset();
+    this.conf = new CSharpConfiguration(project.getFileSystem().getSourceCharset());
+    conf.setStateMachineLexer(settings.getBoolean(CSharpSquidConstants.STATE_MACHINE_LEXER));
+    conf.setDefinedSymbols(Arrays.asList(settings.getStringArray(CSharpSquidConstants.CONDITIONAL_COMPILATION_SYMBOLS)));
+    this.store = store;
   }
 
   @Override
@@ -47,7 +53,7 @@ public class CSharpCPDMapping extends AbstractCpdMapping {
 
   @Override
   public Tokenizer getTokenizer() {
-    return new CSharpCPDTokenizer(charset);
+    return new CSharpCPDTokenizer(conf, store);
   }
 
 }
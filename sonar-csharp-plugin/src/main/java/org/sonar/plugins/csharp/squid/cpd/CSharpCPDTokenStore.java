@@ -0,0 +1,177 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.squidbridge.api.AnalysisException;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * CPD tokens of the files scanned by the squid sensor, recorded by {@link CSharpCPDVisitor} so that {@link CSharpCPDTokenizer} does
+ * not have to lex the files again. The tokens of the other files are lexed in parallel by {@link #lexMissingFiles(Collection, CSharpConfiguration)}.
+ * The tokens of a file are held until they are taken by the tokenizer, and their images are shared between all the files.
+ */
+public class CSharpCPDTokenStore implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpCPDTokenStore.class);
+
+  private final Interner<String> images = Interners.newStrongInterner();
+  private final ConcurrentMap<String, FileTokens> files = new ConcurrentHashMap<String, FileTokens>();
+
+  /**
+   * Records the tokens of the given file, replacing the previous ones. May be called by several threads.
+   */
+  public void put(String fileName, String[] tokenImages, int[] tokenLines, int size) {
+    String[] fileImages = new String[size];
+    for (int i = 0; i < size; i++) {
+      fileImages[i] = images.intern(tokenImages[i]);
+    }
+    int[] fileLines = new int[size];
+    System.arraycopy(tokenLines, 0, fileLines, 0, size);
+    files.put(fileName, new FileTokens(fileImages, fileLines));
+  }
+
+  /**
+   * Lexes the given files whose tokens are not recorded yet, such as the ones taken from the analysis cache, on as many threads as
+   * {@link CSharpConfiguration#getThreads()}. The files which cannot be lexed are left to the tokenizer, which reports the error.
+   */
+  public void lexMissingFiles(Collection<File> files, final CSharpConfiguration conf) {
+    final Queue<File> missingFiles = new ConcurrentLinkedQueue<File>();
+    for (File file : files) {
+      if (!this.files.containsKey(file.getAbsolutePath())) {
+        missingFiles.add(file);
+      }
+    }
+    int threads = Math.min(conf.getThreads(), missingFiles.size());
+    if (threads == 0) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("C# CPD tokenizer %d").setDaemon(true).build());
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            Lexer lexer = CSharpCPDTokenizer.createLexer(conf);
+            for (File file = missingFiles.poll(); file != null; file = missingFiles.poll()) {
+              lex(lexer, file);
+            }
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Interrupted while waiting for the C# CPD tokenizers", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void lex(Lexer lexer, File file) {
+    List<Token> tokens;
+    try {
+      tokens = lexer.lex(file);
+    } catch (LexerException e) {
+      LOG.debug("Unable to lex file: " + file.getAbsolutePath(), e);
+      return;
+    }
+
+    String[] tokenImages = new String[tokens.size()];
+    int[] tokenLines = new int[tokens.size()];
+    int size = 0;
+    for (Token token : tokens) {
+      if (token.getType() != GenericTokenType.EOF) {
+        tokenImages[size] = CSharpCPDTokenizer.getTokenImage(token);
+        tokenLines[size] = token.getLine();
+        size++;
+      }
+    }
+    put(file.getAbsolutePath(), tokenImages, tokenLines, size);
+  }
+
+  /**
+   * @return the tokens of the given file, which are no longer held by this store, or null if they were not recorded
+   */
+  @Nullable
+  public FileTokens take(String fileName) {
+    return files.remove(fileName);
+  }
+
+  public static class FileTokens {
+
+    private final String[] images;
+    private final int[] lines;
+
+    private FileTokens(String[] images, int[] lines) {
+      this.images = images;
+      this.lines = lines;
+    }
+
+    public int size() {
+      return images.length;
+    }
+
+    public String getImage(int index) {
+      return images[index];
+    }
+
+    public int getLine(int index) {
+      return lines[index];
+    }
+
+  }
+
+}
@@ -22,6 +22,7 @@ package org.sonar.plugins.csharp.squid.cpd;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpTokenType;
 import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.lexer.preprocessors.ConditionalCompilationPreprocessor;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
 import net.sourceforge.pmd.cpd.SourceCode;
@@ -29,26 +30,51 @@ import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokenizer;
 import net.sourceforge.pmd.cpd.Tokens;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
-import java.nio.charset.Charset;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 
 public class CSharpCPDTokenizer implements Tokenizer {
 
-  private final Charset charset;
+  private final CSharpConfiguration conf;
+  private final CSharpCPDTokenStore store;
+
+  /**
+   * Lexers are not thread-safe, each thread tokenizing files gets its own one.
+   */
+  private final ThreadLocal<Lexer> lexers = new ThreadLocal<Lexer>() {
+    @Override
+    protected Lexer initialValue() {
+      return createLexer(conf);
+    }
+  };
 
-  public CSharpCPDTokenizer(Charset charset) {
-    this.charset = charset;
+  /**
+   * @param store tokens recorded during the squid scan, null to lex all the files
+   */
+  public CSharpCPDTokenizer(CSharpConfiguration conf, @Nullable CSharpCPDTokenStore store) {
+    this.conf = conf;
+    this.store = store;
   }
 
   @Override
   public final void tokenize(SourceCode source, Tokens cpdTokens) {
-    CSharpConfiguration conf = new CSharpConfiguration(charset);
-    Lexer lexer = CSharpLexer.create(conf, new IgnoreUsingDirectivePreprocessor(conf));
-
     String fileName = source.getFileName();
-    for (Token token : lexer.lex(new File(fileName))) {
+    CSharpCPDTokenStore.FileTokens fileTokens = store == null ? null : store.take(fileName);
+    if (fileTokens == null) {
+      lex(fileName, cpdTokens);
+    } else {
+      for (int i = 0; i < fileTokens.size(); i++) {
+        cpdTokens.add(new TokenEntry(fileTokens.getImage(i), fileName, fileTokens.getLine(i)));
+      }
+    }
+    cpdTokens.add(TokenEntry.getEOF());
+  }
+
+  private void lex(String fileName, Tokens cpdTokens) {
+    for (Token token : lexers.get().lex(new File(fileName))) {
       if (token.getType() == EOF) {
         break;
       }
@@ -56,10 +82,13 @@ public class CSharpCPDTokenizer implements Tokenizer {
       TokenEntry cpdToken = new TokenEntry(getTokenImage(token), fileName, token.getLine());
       cpdTokens.add(cpdToken);
     }
-    cpdTokens.add(TokenEntry.getEOF());
   }
 
-  private String getTokenImage(Token token) {
+  static Lexer createLexer(CSharpConfiguration conf) {
+    return CSharpLexer.create(conf, new ConditionalCompilationPreprocessor(conf.getDefinedSymbols()), new IgnoreUsingDirectivePreprocessor(conf));
+  }
+
+  static String getTokenImage(Token token) {
     if (token.getType() == CSharpTokenType.STRING_LITERAL) {
       return CSharpTokenType.STRING_LITERAL.getValue();
     }
@@ -0,0 +1,116 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import javax.annotation.Nullable;
+
+/**
+ * Visitor that records the CPD tokens of the scanned files into a {@link CSharpCPDTokenStore}: the same tokens as the ones of
+ * {@link CSharpCPDTokenizer}, without the using directives and with string literals collapsed. The tokens of a file which could not
+ * be parsed are not recorded, the tokenizer lexes it again.
+ */
+public class CSharpCPDVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final CSharpCPDTokenStore store;
+  private String[] images = new String[INITIAL_CAPACITY];
+  private int[] lines = new int[INITIAL_CAPACITY];
+  private int size;
+  private boolean recording;
+  private Token lastRecordedToken;
+  private Token usingDirectiveLastToken;
+
+  public CSharpCPDVisitor(CSharpCPDTokenStore store) {
+    this.store = store;
+  }
+
+  @Override
+  public void init() {
+    subscribeTo(CSharpGrammar.USING_DIRECTIVE);
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    size = 0;
+    recording = astNode != null && astNode.is(CSharpGrammar.COMPILATION_UNIT);
+    lastRecordedToken = null;
+    usingDirectiveLastToken = null;
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    // The first token of the directive is visited along with its ancestors, before the directive itself
+    if (size > 0 && lastRecordedToken == astNode.getToken()) {
+      size--;
+    }
+    usingDirectiveLastToken = astNode.getLastToken();
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    if (!recording || token.getType() == GenericTokenType.EOF) {
+      return;
+    }
+    if (usingDirectiveLastToken != null) {
+      if (token == usingDirectiveLastToken) {
+        usingDirectiveLastToken = null;
+      }
+      return;
+    }
+
+    if (size == images.length) {
+      grow();
+    }
+    images[size] = CSharpCPDTokenizer.getTokenImage(token);
+    lines[size] = token.getLine();
+    size++;
+    lastRecordedToken = token;
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    if (recording) {
+      store.put(getContext().getFile().getAbsolutePath(), images, lines, size);
+    }
+    // Does not keep the images of the last file
+    for (int i = 0; i < size; i++) {
+      images[i] = null;
+    }
+  }
+
+  private void grow() {
+    String[] newImages = new String[images.length * 2];
+    System.arraycopy(images, 0, newImages, 0, size);
+    images = newImages;
+    int[] newLines = new int[lines.length * 2];
+    System.arraycopy(lines, 0, newLines, 0, size);
+    lines = newLines;
+  }
+
+}
@@ -21,41 +21,116 @@ package org.sonar.plugins.csharp.squid.cpd;
 
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
-import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.csharp.squid.parser.CSharpParserPool;
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.api.PreprocessorAction;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.impl.Parser;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Removes the using directives, as matched by {@link CSharpGrammar#USING_DIRECTIVE}.
+ * <p>
+ * Directives are recognized directly on the tokens, only the ones with type arguments, which are seldom seen, require the parser.
+ * </p>
+ */
 public class IgnoreUsingDirectivePreprocessor extends Preprocessor {
 
-  private final Parser<Grammar> parser;
+  private static final int NO_MATCH = -1;
+  private static final int TYPE_ARGUMENTS = -2;
+
+  private final CSharpParserPool parserPool;
 
   public IgnoreUsingDirectivePreprocessor(CSharpConfiguration conf) {
-    this.parser = CSharpParser.create(conf);
-    this.parser.setRootRule(this.parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
+    this.parserPool = CSharpParserPool.get(conf);
   }
 
   @Override
   public PreprocessorAction process(List<Token> tokens) {
-    if (tokens.get(0).getType() == CSharpKeyword.USING) {
-      try {
-        AstNode usingDirectiveNode = this.parser.parse(tokens);
-        return new PreprocessorAction(usingDirectiveNode.getToIndex(), new ArrayList<Trivia>(), new ArrayList<Token>());
-      } catch (RecognitionException re) {
-        return PreprocessorAction.NO_OPERATION;
-      }
-    } else {
+    if (tokens.get(0).getType() != CSharpKeyword.USING) {
       return PreprocessorAction.NO_OPERATION;
     }
+
+    int end = usingDirectiveEnd(tokens);
+    if (end == TYPE_ARGUMENTS) {
+      end = parseUsingDirective(tokens);
+    }
+    return end == NO_MATCH ? PreprocessorAction.NO_OPERATION : new PreprocessorAction(end, new ArrayList<Trivia>(), new ArrayList<Token>());
+  }
+
+  /**
+   * <pre>
+   * usingDirective: "using" (IDENTIFIER "=" namespaceOrTypeName | namespaceOrTypeName) ";"
+   * </pre>
+   *
+   * @return the index following the directive, {@link #NO_MATCH} or {@link #TYPE_ARGUMENTS} if the parser must be used
+   */
+  private static int usingDirectiveEnd(List<Token> tokens) {
+    int end = NO_MATCH;
+    if (isType(tokens, 1, GenericTokenType.IDENTIFIER) && isType(tokens, 2, CSharpPunctuator.EQUAL)) {
+      end = semicolon(tokens, namespaceOrTypeNameEnd(tokens, 3));
+    }
+    return end == NO_MATCH ? semicolon(tokens, namespaceOrTypeNameEnd(tokens, 1)) : end;
+  }
+
+  /**
+   * <pre>
+   * namespaceOrTypeName: (IDENTIFIER "::" IDENTIFIER | IDENTIFIER) typeArgumentList? ("." IDENTIFIER typeArgumentList?)*
+   * </pre>
+   */
+  private static int namespaceOrTypeNameEnd(List<Token> tokens, int start) {
+    if (!isType(tokens, start, GenericTokenType.IDENTIFIER)) {
+      return NO_MATCH;
+    }
+
+    int i = start + 1;
+    if (isType(tokens, i, CSharpPunctuator.DOUBLE_COLON) && isType(tokens, i + 1, GenericTokenType.IDENTIFIER)) {
+      i += 2;
+    }
+    while (true) {
+      if (isType(tokens, i, CSharpPunctuator.INFERIOR)) {
+        return TYPE_ARGUMENTS;
+      }
+      if (isType(tokens, i, CSharpPunctuator.DOT) && isType(tokens, i + 1, GenericTokenType.IDENTIFIER)) {
+        i += 2;
+      } else {
+        return i;
+      }
+    }
+  }
+
+  private static int semicolon(List<Token> tokens, int index) {
+    if (index < 0) {
+      return index;
+    }
+    return isType(tokens, index, CSharpPunctuator.SEMICOLON) ? index + 1 : NO_MATCH;
+  }
+
+  private static boolean isType(List<Token> tokens, int index, TokenType type) {
+    return index < tokens.size() && tokens.get(index).getType() == type;
+  }
+
+  private int parseUsingDirective(List<Token> tokens) {
+    Parser<Grammar> parser = parserPool.borrow();
+    try {
+      parser.setRootRule(parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
+      AstNode usingDirectiveNode = parser.parse(tokens);
+      return usingDirectiveNode.getToIndex();
+    } catch (RecognitionException re) {
+      return NO_MATCH;
+    } finally {
+      parserPool.release(parser);
+    }
   }
 
 }
@@ -28,6 +28,7 @@ import org.sonar.plugins.csharp.squid.CSharpRuleRepository;
 import org.sonar.plugins.csharp.squid.CSharpSquidSensor;
 import org.sonar.plugins.csharp.squid.colorizer.CSharpSourceCodeColorizer;
 import org.sonar.plugins.csharp.squid.cpd.CSharpCPDMapping;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDTokenStore;
 
 import java.util.List;
 
@@ -43,13 +44,14 @@ public class CSharpCorePluginTest {
       CSharpCommonRulesEngine.class,
       CSharpCommonRulesDecorator.class,
       CSharpCPDMapping.class,
+      CSharpCPDTokenStore.class,
       CSharpSourceCodeColorizer.class,
       CSharpSquidSensor.class,
       CSharpRuleRepository.class,
       CSharpRuleProfile.class);
 
     assertThat(new CSharpCorePlugin().getExtensions()).hasSize(
-      9
+      10
         + CSharpFxCopProvider.extensions().size()
         + CSharpCodeCoverageProvider.extensions().size()
         + CSharpUnitTestResultsProvider.extensions().size());
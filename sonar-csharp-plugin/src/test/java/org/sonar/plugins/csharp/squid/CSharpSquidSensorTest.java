@@ -0,0 +1,129 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.checks.NoSonarFilter;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.scan.filesystem.FileQuery;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.csharp.api.CSharp;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDTokenStore;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class CSharpSquidSensorTest {
+
+  private static final File SOURCE_DIR = new File("../csharp-squid/src/test/resources/integration");
+
+  @Test
+  public void files_saved_one_at_a_time_from_the_sensor_thread() {
+    List<File> files = ImmutableList.copyOf(FileUtils.listFiles(SOURCE_DIR, new String[] {"cs"}, true)).subList(0, 8);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    when(fileSystem.files(any(FileQuery.class))).thenReturn(files);
+    when(fileSystem.sourceCharset()).thenReturn(Charsets.UTF_8);
+    when(fileSystem.baseDir()).thenReturn(SOURCE_DIR);
+    when(fileSystem.workingDir()).thenReturn(new File("target"));
+
+    ProjectFileSystem projectFileSystem = mock(ProjectFileSystem.class);
+    when(projectFileSystem.getSourceDirs()).thenReturn(Lists.newArrayList(SOURCE_DIR));
+    Project project = mock(Project.class);
+    when(project.getFileSystem()).thenReturn(projectFileSystem);
+
+    Settings settings = new Settings();
+    settings.setProperty(CSharpSquidConstants.THREADS, 3);
+
+    // Every save checks that it is made from the sensor thread, and that no other save is in progress
+    SaveChecker saveChecker = new SaveChecker(Thread.currentThread());
+    SensorContext context = mock(SensorContext.class, withSettings().defaultAnswer(saveChecker));
+    NoSonarFilter noSonarFilter = mock(NoSonarFilter.class, withSettings().defaultAnswer(saveChecker));
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class, withSettings().defaultAnswer(saveChecker));
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(any(Resource.class))).thenAnswer(new SaveChecker(Thread.currentThread(), fileLinesContext));
+
+    CSharpSquidSensor sensor = new CSharpSquidSensor(settings, new CSharp(settings), fileSystem, RulesProfile.create(), noSonarFilter,
+      fileLinesContextFactory, new CSharpCPDTokenStore());
+    sensor.analyse(project, context);
+
+    assertThat(saveChecker.saves.get()).isGreaterThan(files.size());
+    verify(fileLinesContext, atLeastOnce()).setIntValue(eq(CoreMetrics.NCLOC_DATA_KEY), anyInt(), anyInt());
+    verify(noSonarFilter, times(files.size())).addResource(any(Resource.class), any(Set.class));
+  }
+
+  private static class SaveChecker implements Answer<Object> {
+
+    private static final AtomicBoolean SAVING = new AtomicBoolean();
+
+    private final Thread sensorThread;
+    private final Object result;
+    private final AtomicInteger saves = new AtomicInteger();
+
+    public SaveChecker(Thread sensorThread) {
+      this(sensorThread, null);
+    }
+
+    public SaveChecker(Thread sensorThread, Object result) {
+      this.sensorThread = sensorThread;
+      this.result = result;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws InterruptedException {
+      assertThat(Thread.currentThread()).as(invocation.toString()).isSameAs(sensorThread);
+      assertThat(SAVING.getAndSet(true)).as(invocation.toString()).isFalse();
+      // Leaves the time to the workers to save concurrently, if they were able to
+      Thread.sleep(1);
+      saves.incrementAndGet();
+      SAVING.set(false);
+      return result;
+    }
+
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AnalysisCacheTest {
+
+  private final File dir = new File("target/AnalysisCacheTest");
+  private File cacheFile;
+  private File sourceFile;
+
+  @Before
+  public void init() throws IOException {
+    FileUtils.deleteDirectory(dir);
+    cacheFile = new File(dir, "cache/csharp.cache");
+    sourceFile = new File(dir, "Foo.cs");
+    Files.createParentDirs(sourceFile);
+    Files.write("class Foo { }", sourceFile, Charsets.UTF_8);
+  }
+
+  @Test
+  public void should_reuse_results_of_unchanged_files() {
+    AnalysisCache cache = AnalysisCache.load(cacheFile, "key");
+    assertThat(cache.get(sourceFile)).isNull();
+
+    CachedFile cachedFile = new CachedFile();
+    cachedFile.getMeasures().put(CSharpMetric.CLASSES, 1.0);
+    cachedFile.getMemberComplexities().put("Foo#Bar()", 3.0);
+    cachedFile.getNoSonarLines().add(2);
+    cachedFile.getIssues().add(new CachedFile.Issue("S1", 1, "message"));
+    cache.put(sourceFile, cachedFile);
+    cache.save();
+
+    CachedFile reloaded = AnalysisCache.load(cacheFile, "key").get(sourceFile);
+    assertThat(reloaded).isNotNull();
+    assertThat(reloaded.getMeasures().get(CSharpMetric.CLASSES)).isEqualTo(1.0);
+    assertThat(reloaded.getMemberComplexities().get("Foo#Bar()")).isEqualTo(3.0);
+    assertThat(reloaded.getNoSonarLines()).containsOnly(2);
+    assertThat(reloaded.getIssues()).hasSize(1);
+    assertThat(reloaded.getIssues().get(0).getRuleKey()).isEqualTo("S1");
+    assertThat(reloaded.getIssues().get(0).getLine()).isEqualTo(1);
+    assertThat(reloaded.getIssues().get(0).getMessage()).isEqualTo("message");
+  }
+
+  @Test
+  public void should_not_reuse_results_of_changed_files() throws IOException {
+    AnalysisCache cache = AnalysisCache.load(cacheFile, "key");
+    cache.get(sourceFile);
+    cache.put(sourceFile, new CachedFile());
+    cache.save();
+
+    Files.write("class Foo { void Bar() { } }", sourceFile, Charsets.UTF_8);
+    assertThat(AnalysisCache.load(cacheFile, "key").get(sourceFile)).isNull();
+  }
+
+  @Test
+  public void should_discard_cache_saved_with_another_key() {
+    AnalysisCache cache = AnalysisCache.load(cacheFile, "key");
+    cache.put(sourceFile, new CachedFile());
+    cache.save();
+
+    assertThat(AnalysisCache.load(cacheFile, "key").get(sourceFile)).isNotNull();
+    assertThat(AnalysisCache.load(cacheFile, "otherKey").get(sourceFile)).isNull();
+  }
+
+  @Test
+  public void should_only_keep_files_of_last_analysis() throws IOException {
+    File otherSourceFile = new File(dir, "Bar.cs");
+    Files.write("class Bar { }", otherSourceFile, Charsets.UTF_8);
+    AnalysisCache cache = AnalysisCache.load(cacheFile, "key");
+    cache.put(sourceFile, new CachedFile());
+    cache.put(otherSourceFile, new CachedFile());
+    cache.save();
+
+    cache = AnalysisCache.load(cacheFile, "key");
+    assertThat(cache.get(sourceFile)).isNotNull();
+    cache.save();
+
+    cache = AnalysisCache.load(cacheFile, "key");
+    assertThat(cache.get(sourceFile)).isNotNull();
+    assertThat(cache.get(otherSourceFile)).isNull();
+  }
+
+  @Test
+  public void should_ignore_corrupted_cache() throws IOException {
+    Files.createParentDirs(cacheFile);
+    Files.write("corrupted", cacheFile, Charsets.UTF_8);
+
+    assertThat(AnalysisCache.load(cacheFile, "key").get(sourceFile)).isNull();
+  }
+
+  @Test
+  public void plugin_version() throws Exception {
+    assertThat(AnalysisCache.pluginVersion(new File("src/test/resources/cache/version.properties").toURI().toURL())).isEqualTo("1.2.3");
+    assertThat(AnalysisCache.pluginVersion(new File("src/test/resources/cache/unfiltered-version.properties").toURI().toURL())).isNull();
+    assertThat(AnalysisCache.pluginVersion(new File("src/test/resources/cache/missing.properties").toURI().toURL())).isNull();
+    assertThat(AnalysisCache.pluginVersion(null)).isNull();
+  }
+
+}
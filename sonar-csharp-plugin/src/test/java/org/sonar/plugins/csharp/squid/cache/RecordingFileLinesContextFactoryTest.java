@@ -0,0 +1,53 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import org.junit.Test;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.resources.File;
+
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RecordingFileLinesContextFactoryTest {
+
+  @Test
+  public void should_record_values_until_taken() {
+    File file = new File("Foo.cs");
+    RecordingFileLinesContextFactory factory = new RecordingFileLinesContextFactory();
+    assertThat(factory.takeValues(file)).isEmpty();
+
+    FileLinesContext context = factory.createFor(file);
+    context.setIntValue("ncloc_data", 1, 1);
+    context.setIntValue("ncloc_data", 2, 0);
+    context.save();
+    assertThat(context.getIntValue("ncloc_data", 1)).isEqualTo(1);
+    assertThat(context.getIntValue("comment_lines_data", 1)).isNull();
+
+    Map<String, Map<Integer, Integer>> values = factory.takeValues(file);
+    assertThat(values.get("ncloc_data").get(1)).isEqualTo(1);
+    assertThat(values.get("ncloc_data").get(2)).isEqualTo(0);
+
+    // The values are only kept until they are taken
+    assertThat(factory.takeValues(file)).isEmpty();
+  }
+
+}
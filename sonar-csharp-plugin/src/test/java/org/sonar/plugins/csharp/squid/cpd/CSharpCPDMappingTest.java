@@ -55,7 +55,7 @@ public class CSharpCPDMappingTest {
 
   @Test
   public void test() {
-    CSharpCPDMapping mapping = new CSharpCPDMapping(language, project, settings);
+    CSharpCPDMapping mapping = new CSharpCPDMapping(language, project, settings, new CSharpCPDTokenStore());
 
     assertThat(mapping.getLanguage()).isSameAs(language);
     assertThat(mapping.getTokenizer()).isInstanceOf(CSharpCPDTokenizer.class);
@@ -0,0 +1,79 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpCPDTokenStoreTest {
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+
+  @Test
+  public void lex_missing_files_in_parallel() {
+    conf.setThreads(3);
+    CSharpCPDTokenStore store = new CSharpCPDTokenStore();
+    Collection<File> files = FileUtils.listFiles(new File("src/test/resources/cpd"), new String[] {"cs"}, false);
+    store.lexMissingFiles(files, conf);
+
+    for (File file : files) {
+      List<TokenEntry> expected = tokenize(new CSharpCPDTokenizer(conf, null), file);
+      CSharpCPDTokenStore.FileTokens actual = store.take(file.getAbsolutePath());
+
+      // The tokenizer adds the EOF token
+      assertThat(actual.size()).isEqualTo(expected.size() - 1);
+      for (int i = 0; i < actual.size(); i++) {
+        assertThat(actual.getImage(i)).as(file + " " + i).isEqualTo(expected.get(i).getValue());
+        assertThat(actual.getLine(i)).as(file + " " + i).isEqualTo(expected.get(i).getBeginLine());
+      }
+    }
+  }
+
+  @Test
+  public void recorded_files_not_lexed() {
+    CSharpCPDTokenStore store = new CSharpCPDTokenStore();
+    File file = new File("src/test/resources/cpd/simpleFile.cs");
+    store.put(file.getAbsolutePath(), new String[] {"recorded"}, new int[] {1}, 1);
+    store.lexMissingFiles(Collections.singleton(file), conf);
+
+    CSharpCPDTokenStore.FileTokens tokens = store.take(file.getAbsolutePath());
+    assertThat(tokens.size()).isEqualTo(1);
+    assertThat(tokens.getImage(0)).isEqualTo("recorded");
+  }
+
+  private static List<TokenEntry> tokenize(CSharpCPDTokenizer tokenizer, File file) {
+    Tokens tokens = new Tokens();
+    tokenizer.tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, Charsets.UTF_8.name())), tokens);
+    return tokens.getTokens();
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpCPDVisitorTest {
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+
+  @Test
+  public void same_tokens_as_lexer() {
+    CSharpCPDTokenStore store = new CSharpCPDTokenStore();
+    Collection<File> files = FileUtils.listFiles(new File("src/test/resources/cpd"), new String[] {"cs"}, false);
+    CSharpAstScanner.create(conf, new CSharpCPDVisitor(store)).scanFiles(files);
+
+    for (File file : files) {
+      List<TokenEntry> expected = tokenize(new CSharpCPDTokenizer(conf, null), file);
+      List<TokenEntry> actual = tokenize(new CSharpCPDTokenizer(conf, store), file);
+
+      assertThat(actual).hasSize(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(actual.get(i).getValue()).as(file + " " + i).isEqualTo(expected.get(i).getValue());
+        assertThat(actual.get(i).getBeginLine()).as(file + " " + i).isEqualTo(expected.get(i).getBeginLine());
+      }
+    }
+  }
+
+  @Test
+  public void tokens_taken_once() {
+    CSharpCPDTokenStore store = new CSharpCPDTokenStore();
+    File file = new File("src/test/resources/cpd/simpleFile.cs");
+    CSharpAstScanner.create(conf, new CSharpCPDVisitor(store)).scanFile(file);
+
+    assertThat(store.take(file.getAbsolutePath()).size()).isEqualTo(17);
+    assertThat(store.take(file.getAbsolutePath())).isNull();
+  }
+
+  @Test
+  public void unparsed_file_not_recorded() {
+    CSharpCPDTokenStore store = new CSharpCPDTokenStore();
+    File file = new File("src/test/resources/cpd/unparsed.cs");
+    CSharpAstScanner.create(conf, new CSharpCPDVisitor(store)).scanFile(file);
+
+    assertThat(store.take(file.getAbsolutePath())).isNull();
+  }
+
+  private static List<TokenEntry> tokenize(CSharpCPDTokenizer tokenizer, File file) {
+    Tokens tokens = new Tokens();
+    tokenizer.tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, Charsets.UTF_8.name())), tokens);
+    return tokens.getTokens();
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
+import com.sonar.csharp.squid.CSharpConfiguration;
 import net.sourceforge.pmd.cpd.SourceCode;
 import net.sourceforge.pmd.cpd.Tokens;
 import org.apache.commons.io.FileUtils;
@@ -33,7 +34,7 @@ import static org.junit.Assert.assertThat;
 
 public class CSharpCpdTokenizerTest {
 
-  private final CSharpCPDTokenizer tokenizer = new CSharpCPDTokenizer(Charset.defaultCharset());
+  private final CSharpCPDTokenizer tokenizer = new CSharpCPDTokenizer(new CSharpConfiguration(Charset.defaultCharset()), null);
 
   @Test
   public void testTokenize() throws FileNotFoundException {
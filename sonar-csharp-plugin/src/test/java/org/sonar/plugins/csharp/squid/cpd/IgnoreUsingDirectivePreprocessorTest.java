@@ -0,0 +1,141 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IgnoreUsingDirectivePreprocessorTest {
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+  private final Lexer lexer = CSharpLexer.create(conf, new IgnoreUsingDirectivePreprocessor(conf));
+  private final Lexer referenceLexer = CSharpLexer.create(conf, new ParserPreprocessor(conf));
+
+  @Test
+  public void using_directives() {
+    assertThat(values("using System; class A {}")).isEqualTo("class A { } EOF");
+    assertThat(values("using A = B.C; using global::D; using E = global::F.G; class A {}")).isEqualTo("class A { } EOF");
+    assertThat(values("using A = B<C>.D; using System.Collections.Generic; class A {}")).isEqualTo("class A { } EOF");
+    assertThat(values("using (var x = y) {}")).isEqualTo("using ( var x = y ) { } EOF");
+  }
+
+  @Test
+  public void same_tokens_as_with_parser() {
+    List<String> sources = ImmutableList.of(
+        "using System;",
+        "using A.B.C.D;",
+        "using A = B.C;",
+        "using A = global::B.C;",
+        "using global::A;",
+        "using A = List<int>;",
+        "using A = Dictionary<string, List<int[]>>.KeyCollection;",
+        "using A.B<C>;",
+        "using A = B < C;",
+        "using A = B.C",
+        "using A",
+        "using",
+        "using;",
+        "using A.;",
+        "using A::;",
+        "using A:: B.C;",
+        "using A = ;",
+        "using A = B = C;",
+        "using @class;",
+        "using class;",
+        "using (var x = new A()) { using (y) {} }",
+        "namespace N { using System; using X = Y; }");
+
+    for (String source : sources) {
+      assertThat(values(lexer.lex(source))).as(source).isEqualTo(values(referenceLexer.lex(source)));
+    }
+  }
+
+  @Test
+  public void same_tokens_as_with_parser_on_files() {
+    for (File file : FileUtils.listFiles(new File("../csharp-squid/src/test/resources"), new String[] {"cs"}, true)) {
+      assertThat(values(lexer.lex(file))).as(file.getPath()).isEqualTo(values(referenceLexer.lex(file)));
+    }
+  }
+
+  private String values(String source) {
+    return values(lexer.lex(source));
+  }
+
+  private static String values(List<Token> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : tokens) {
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(token.getValue());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Former implementation, which parses every using keyword with the rule {@link CSharpGrammar#USING_DIRECTIVE}.
+   */
+  private static class ParserPreprocessor extends Preprocessor {
+
+    private final Parser<Grammar> parser;
+
+    public ParserPreprocessor(CSharpConfiguration conf) {
+      this.parser = CSharpParser.create(conf);
+      this.parser.setRootRule(this.parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
+    }
+
+    @Override
+    public PreprocessorAction process(List<Token> tokens) {
+      if (tokens.get(0).getType() != CSharpKeyword.USING) {
+        return PreprocessorAction.NO_OPERATION;
+      }
+      try {
+        AstNode usingDirectiveNode = parser.parse(tokens);
+        return new PreprocessorAction(usingDirectiveNode.getToIndex(), new ArrayList<Trivia>(), new ArrayList<Token>());
+      } catch (RecognitionException re) {
+        return PreprocessorAction.NO_OPERATION;
+      }
+    }
+
+  }
+
+}
@@ -22,7 +22,7 @@ package com.sonar.csharp.toolkit;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.sonar.csharp.squid.CSharpConfiguration;
-import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.csharp.squid.parser.CSharpParserPool;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
 import org.slf4j.Logger;
@@ -58,7 +58,7 @@ public class CSharpConfigurationModel extends AbstractConfigurationModel {
 
   @Override
   public Parser<Grammar> doGetParser() {
-    return CSharpParser.create(getConfiguration());
+    return CSharpParserPool.get(getConfiguration()).newParser();
   }
 
   @Override